@@ -0,0 +1,84 @@
+package battlecode.common;
+
+/**
+ * The layout of the compact action RobotController.act applies, meant to be
+ * a row of network outputs. An action has three parts, applied in order: a
+ * move, a shot and an interaction with a tree. Each part is skipped when it
+ * asks for nothing, so a zeroed action does nothing.
+ * <p>
+ * Angles are in half turns, so any value in [-1, 1] is a direction. The tree
+ * target is an offset from the robot over its sensor radius, as in an
+ * Observation, so a network can aim at a tree slot by copying its DX and DY.
+ * <p>
+ * act returns the result of every part packed into one int; result() and
+ * failure() unpack them.
+ */
+public class Action {
+
+	/** Direction of the move. */
+	public static final int MOVE_ANGLE = 0;
+	/** Distance of the move over the stride radius, clamped to [0, 1]. */
+	public static final int MOVE_DISTANCE = 1;
+	/** One of NO_SHOT, SINGLE, TRIAD or PENTAD, rounded to the nearest. */
+	public static final int SHOT = 2;
+	public static final int SHOT_ANGLE = 3;
+	/** One of NO_TREE, CHOP, SHAKE or WATER, rounded to the nearest. */
+	public static final int TREE = 4;
+	/** Any point of the target tree. */
+	public static final int TREE_DX = 5, TREE_DY = 6;
+	public static final int SIZE = 7;
+
+	public static final int NO_SHOT = 0, SINGLE = 1, TRIAD = 2, PENTAD = 3;
+	public static final int NO_TREE = 0, CHOP = 1, SHAKE = 2, WATER = 3;
+
+	/** Parts of a packed result, as shifts. */
+	public static final int MOVE = 0, FIRE = 8, INTERACT = 16;
+	/** Results of one part; any other result is a failure. */
+	public static final int SKIPPED = 0, DONE = 1;
+
+	private static final GameActionExceptionType[] FAILURES = GameActionExceptionType.values();
+
+	private Action() {
+	}
+
+	/**
+	 * @return SKIPPED, DONE or the code of a failure, for the given part of
+	 * a result returned by act
+	 */
+	public static int result(int results, int part) {
+		return results >>> part & 0xFF;
+	}
+
+	/**
+	 * @return why the given part of a result returned by act failed, or null
+	 * if it did not
+	 */
+	public static GameActionExceptionType failure(int results, int part) {
+		int result = result(results, part);
+		return result > DONE ? FAILURES[result - DONE - 1] : null;
+	}
+
+	/**
+	 * @return the result code of a part that failed for the given reason, or
+	 * DONE if failure is null
+	 */
+	static int code(GameActionExceptionType failure) {
+		return failure == null ? DONE : failure.ordinal() + DONE + 1;
+	}
+
+	/**
+	 * @return an angle in half turns in radians, or 0 if it is not finite
+	 */
+	static float radians(float halfTurns) {
+		return Float.isFinite(halfTurns) ? halfTurns * (float)Math.PI : 0;
+	}
+
+	/**
+	 * @return value rounded to the nearest of 0 to max, or 0 if it is NaN
+	 */
+	static int choice(float value, int max) {
+		if (!(value > 0)) return 0;
+		return value >= max ? max : Math.round(value);
+	}
+
+}
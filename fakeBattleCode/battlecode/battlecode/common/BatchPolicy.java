@@ -0,0 +1,42 @@
+package battlecode.common;
+
+/**
+ * Player code for a whole team that decides with a NeuralNetwork. A
+ * GameEngine built with policies plays each round in three phases: every
+ * robot writes its observation, each network is evaluated once over the
+ * observations of all robots using it, and then every robot acts on its row
+ * of the outputs, in the usual turn order.
+ * <p>
+ * observe and act run within the robot's turn and share its bytecode
+ * budget; the network evaluation itself is not charged to any robot. Since
+ * every observation is made before anyone acts, robots see the map as it
+ * was at the start of the round.
+ */
+public interface BatchPolicy {
+
+	/**
+	 * @return the network this team's robots use; the engine evaluates it,
+	 * so it must not be evaluated elsewhere during a round
+	 */
+	NeuralNetwork getNetwork();
+
+	/**
+	 * Writes the observation of the robot controlled by rc into
+	 * features[offset, offset + getNetwork().getInputSize()). The range
+	 * starts out zeroed.
+	 *
+	 * @throws GameActionException if a query fails; the robot then acts on
+	 * whatever it wrote before the failure
+	 */
+	void observe(RobotController rc, float[] features, int offset) throws GameActionException;
+
+	/**
+	 * Plays the robot's turn from its network outputs in
+	 * outputs[offset, offset + getNetwork().getOutputSize()). Exceptions are
+	 * handled as for Player.runTurn.
+	 *
+	 * @throws GameActionException if an action fails and the policy does not handle it
+	 */
+	void act(RobotController rc, float[] outputs, int offset) throws GameActionException;
+
+}
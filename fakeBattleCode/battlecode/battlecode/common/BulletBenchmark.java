@@ -0,0 +1,55 @@
+package battlecode.common;
+
+import java.util.LinkedList;
+
+/**
+ * Times bullet stepping with BulletIntegrator against the one-bullet-at-a-time
+ * path. Both paths are package methods of Map, so they are compared in the
+ * same JVM on identical maps full of slow bullets and a few trees to hit.
+ * <p>
+ * Usage: {@code java battlecode.common.BulletBenchmark [bullets] [rounds]}
+ */
+public class BulletBenchmark {
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		for (int warmup = 0; warmup < 5; warmup++) {
+			time(false, count, rounds);
+			time(true, count, rounds);
+		}
+		double scalar = time(false, count, rounds);
+		double batched = time(true, count, rounds);
+		System.out.printf("scalar:  %.3f ms/round%n", scalar);
+		System.out.printf("batched: %.3f ms/round%n", batched);
+		System.out.printf("speedup: %.2fx%n", scalar / batched);
+	}
+
+	/**
+	 * @return milliseconds per round of bullet stepping
+	 */
+	private static double time(boolean batched, int count, int rounds) {
+		Map map = map(count);
+		long start = System.nanoTime();
+		for (int r = 0; r < rounds; r++) {
+			if (batched) map.stepBulletsBatched();
+			else map.stepBulletsScalar();
+		}
+		return (System.nanoTime() - start) / 1e6 / rounds;
+	}
+
+	private static Map map(int count) {
+		LinkedList<TreeInfo> trees = new LinkedList<>();
+		for (int i = 0; i < 20; i++) {
+			trees.add(new TreeInfo(i + 1, Team.NEUTRAL, new MapLocation(25 + (i % 5) * 50, 25 + (i / 5) * 50), 2, 1e9f, 0, null));
+		}
+		Map map = new Map(250, 250, 3000, new MapLocation(0, 0), trees, new LinkedList<RobotInfo>());
+		for (int i = 0; i < count; i++) {
+			float x = (i * 7919 % 2500) / 10f;
+			float y = (i * 104729 % 2500) / 10f;
+			map.createBullet(x, y, new Direction(i * 0.618f), 0.5f, 1, -1);
+		}
+		return map;
+	}
+
+}
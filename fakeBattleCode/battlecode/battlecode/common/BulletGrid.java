@@ -0,0 +1,107 @@
+package battlecode.common;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the map that buckets the bullets of a BulletPool by the
+ * cell their position falls in, so bullet sensing only visits the cells
+ * around the sensing robot instead of every bullet in flight.
+ * <p>
+ * Bullets only move, and existing bullets are only removed, in the bullet
+ * phase at the end of a round. Bullets fired during turns are appended to
+ * the pool, and one that is dropped at once is always the last. So Map
+ * invalidates the grid when the bullet phase starts, it is built from scratch
+ * on the first query after that, and stays valid for the rest of the round;
+ * bullets fired since it was built are checked one by one.
+ */
+class BulletGrid {
+
+	/**
+	 * Side length of a cell. A query of the smallest bullet sight radius, 10,
+	 * covers at most five cells in each direction.
+	 */
+	static final float CELL_SIZE = 5;
+
+	private final BulletPool bullets;
+	private final float originX, originY;
+	private final int cols, rows;
+	/** Bullets of cell c are entries[start[c]] to entries[start[c + 1] - 1], in pool order. */
+	private final int[] start;
+	private int[] entries = new int[0];
+	private final int[] cursor;
+	/** Number of bullets, from index 0, that are bucketed; -1 if the grid must be rebuilt. */
+	private int indexed = -1;
+
+	BulletGrid(BulletPool bullets, MapLocation origin, int width, int height) {
+		this.bullets = bullets;
+		this.originX = origin.x;
+		this.originY = origin.y;
+		this.cols = Math.max(1, (int)Math.ceil(width / CELL_SIZE));
+		this.rows = Math.max(1, (int)Math.ceil(height / CELL_SIZE));
+		this.start = new int[cols * rows + 1];
+		this.cursor = new int[cols * rows];
+	}
+
+	int cellX(float x) {
+		int cx = (int)Math.floor((x - originX) / CELL_SIZE);
+		return cx < 0 ? 0 : (cx >= cols ? cols - 1 : cx);
+	}
+
+	int cellY(float y) {
+		int cy = (int)Math.floor((y - originY) / CELL_SIZE);
+		return cy < 0 ? 0 : (cy >= rows ? rows - 1 : cy);
+	}
+
+	/**
+	 * Makes the next query rebuild the grid. Called before bullets move.
+	 */
+	void invalidate() {
+		indexed = -1;
+	}
+
+	/**
+	 * Buckets every bullet in the pool at its current position.
+	 */
+	private void build() {
+		int n = bullets.size;
+		if (entries.length < n) entries = new int[bullets.id.length];
+		Arrays.fill(start, 0);
+		for (int i = 0; i < n; i++) {
+			start[cellY(bullets.y[i]) * cols + cellX(bullets.x[i]) + 1]++;
+		}
+		for (int c = 0; c < cursor.length; c++) {
+			start[c + 1] += start[c];
+			cursor[c] = start[c];
+		}
+		for (int i = 0; i < n; i++) {
+			entries[cursor[cellY(bullets.y[i]) * cols + cellX(bullets.x[i])]++] = i;
+		}
+		indexed = n;
+	}
+
+	/**
+	 * Adds to out, in pool order, the index of every bullet within range of
+	 * (x, y).
+	 */
+	void query(float x, float y, float range, IntList out) {
+		if (indexed < 0) build();
+		int from = out.size();
+		int qx0 = cellX(x - range), qx1 = cellX(x + range);
+		int qy0 = cellY(y - range), qy1 = cellY(y + range);
+		for (int cy = qy0; cy <= qy1; cy++) {
+			for (int cx = qx0; cx <= qx1; cx++) {
+				int c = cy * cols + cx;
+				for (int k = start[c], end = start[c + 1]; k < end; k++) {
+					int i = entries[k];
+					if (Geometry.pointWithin(x, y, range, bullets.x[i], bullets.y[i])) out.add(i);
+				}
+			}
+		}
+		out.sort(from);
+		// fired since the grid was built, so past every bucketed index
+		for (int i = indexed, n = bullets.size; i < n; i++) {
+			if (Geometry.pointWithin(x, y, range, bullets.x[i], bullets.y[i])) out.add(i);
+		}
+	}
+
+}
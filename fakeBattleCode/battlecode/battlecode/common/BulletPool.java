@@ -0,0 +1,167 @@
+package battlecode.common;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays storage for every live bullet on the map. Bullets are
+ * kept packed in [0, size) so stepping a round is a straight walk over
+ * primitive arrays; removing a bullet moves the last one into its slot.
+ * BulletInfo objects are only built when a bullet is handed to a player.
+ * An ID index follows every move so bullets can be found by ID directly.
+ * nextX, nextY and leaving are scratch space for BulletIntegrator; they are
+ * only meaningful for the round being stepped and are not moved on removal.
+ */
+class BulletPool {
+
+	int size;
+	int[] id;
+	float[] x, y;
+	/** Displacement per round, computed once when the bullet is fired. */
+	float[] dx, dy;
+	float[] radians, speed, damage;
+	float[] nextX = new float[0], nextY = new float[0];
+	boolean[] leaving = new boolean[0];
+	private final IntIntMap index;
+
+	BulletPool() {
+		this(64);
+	}
+
+	BulletPool(int capacity) {
+		id = new int[capacity];
+		x = new float[capacity];
+		y = new float[capacity];
+		dx = new float[capacity];
+		dy = new float[capacity];
+		radians = new float[capacity];
+		speed = new float[capacity];
+		damage = new float[capacity];
+		index = new IntIntMap();
+	}
+
+	/**
+	 * Creates a copy of other. Every bullet moves every round, so bullets
+	 * are copied outright rather than shared.
+	 */
+	BulletPool(BulletPool other) {
+		int capacity = Math.max(16, other.size);
+		size = other.size;
+		id = Arrays.copyOf(other.id, capacity);
+		x = Arrays.copyOf(other.x, capacity);
+		y = Arrays.copyOf(other.y, capacity);
+		dx = Arrays.copyOf(other.dx, capacity);
+		dy = Arrays.copyOf(other.dy, capacity);
+		radians = Arrays.copyOf(other.radians, capacity);
+		speed = Arrays.copyOf(other.speed, capacity);
+		damage = Arrays.copyOf(other.damage, capacity);
+		index = new IntIntMap(other.index);
+	}
+
+	int size() {
+		return size;
+	}
+
+	int add(int bulletID, float bx, float by, Direction dir, float bulletSpeed, float bulletDamage) {
+		if (size == id.length) grow();
+		int i = size++;
+		id[i] = bulletID;
+		x[i] = bx;
+		y[i] = by;
+		dx[i] = dir.getDeltaX(bulletSpeed);
+		dy[i] = dir.getDeltaY(bulletSpeed);
+		radians[i] = dir.radians;
+		speed[i] = bulletSpeed;
+		damage[i] = bulletDamage;
+		index.put(bulletID, i);
+		return i;
+	}
+
+	void remove(int i) {
+		int last = --size;
+		index.remove(id[i]);
+		if (i != last) {
+			id[i] = id[last];
+			x[i] = x[last];
+			y[i] = y[last];
+			dx[i] = dx[last];
+			dy[i] = dy[last];
+			radians[i] = radians[last];
+			speed[i] = speed[last];
+			damage[i] = damage[last];
+			index.put(id[i], i);
+		}
+	}
+
+	void clear() {
+		size = 0;
+		index.clear();
+	}
+
+	int indexOf(int bulletID) {
+		return index.get(bulletID);
+	}
+
+	/**
+	 * Sizes the scratch arrays to the current capacity.
+	 */
+	void ensureScratch() {
+		if (nextX.length == id.length) return;
+		nextX = new float[id.length];
+		nextY = new float[id.length];
+		leaving = new boolean[id.length];
+	}
+
+	/**
+	 * @return the number of bytes write will produce
+	 */
+	int snapshotBytes() {
+		return 4 + size * (4 + 4 * 7);
+	}
+
+	void write(ByteBuffer out) {
+		out.putInt(size);
+		for (int i = 0; i < size; i++) {
+			out.putInt(id[i]).putFloat(x[i]).putFloat(y[i]).putFloat(dx[i]).putFloat(dy[i]);
+			out.putFloat(radians[i]).putFloat(speed[i]).putFloat(damage[i]);
+		}
+	}
+
+	/**
+	 * Replaces the contents of this pool with what write produced.
+	 */
+	void read(ByteBuffer in) {
+		clear();
+		int n = in.getInt();
+		while (id.length < n) grow();
+		for (int i = 0; i < n; i++) {
+			id[i] = in.getInt();
+			x[i] = in.getFloat();
+			y[i] = in.getFloat();
+			dx[i] = in.getFloat();
+			dy[i] = in.getFloat();
+			radians[i] = in.getFloat();
+			speed[i] = in.getFloat();
+			damage[i] = in.getFloat();
+			index.put(id[i], i);
+		}
+		size = n;
+	}
+
+	BulletInfo get(int i) {
+		return new BulletInfo(id[i], new MapLocation(x[i], y[i]), new Direction(radians[i]), speed[i], damage[i]);
+	}
+
+	private void grow() {
+		int capacity = id.length * 2;
+		id = Arrays.copyOf(id, capacity);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		dx = Arrays.copyOf(dx, capacity);
+		dy = Arrays.copyOf(dy, capacity);
+		radians = Arrays.copyOf(radians, capacity);
+		speed = Arrays.copyOf(speed, capacity);
+		damage = Arrays.copyOf(damage, capacity);
+	}
+
+}
@@ -0,0 +1,24 @@
+package battlecode.common;
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * Java agent that instruments player classes as they are loaded, e.g.
+ * {@code -javaagent:battlecode.jar=examplefuncsplayer,otherplayer}. The
+ * agent argument is a comma separated list of player packages. The jar's
+ * manifest needs {@code Premain-Class: battlecode.common.BytecodeAgent}.
+ * <p>
+ * BytecodeCounter needs ASM 9 (org.ow2.asm:asm:9.8) on the class path. The
+ * Eclipse project finds it under the M2_REPO classpath variable; the agent
+ * jar can name it in its manifest's {@code Class-Path}.
+ */
+public class BytecodeAgent {
+
+	public static void premain(String args, Instrumentation inst) {
+		if (args == null || args.isEmpty()) return;
+		inst.addTransformer(new BytecodeCounter(args.split(",")));
+	}
+
+	private BytecodeAgent() {}
+
+}
@@ -0,0 +1,58 @@
+package battlecode.common;
+
+/**
+ * The bytecode budget of a single robot. Every RobotController owns one and
+ * charges its own actions to it; the engine resets it at the start of each of
+ * the robot's turns.
+ */
+class BytecodeBudget {
+
+	/**
+	 * False when the JVM was started with -Dbc.unmetered=true. Unmetered runs
+	 * never charge bytecodes, so turns are only ended by the player returning
+	 * or yielding. The flag is a constant so the JIT drops the accounting
+	 * entirely instead of testing it on every call.
+	 */
+	static final boolean METERED = !Boolean.getBoolean("bc.unmetered");
+
+	private int limit;
+	private int used;
+
+	BytecodeBudget(int limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * Charges bytecodes to this budget, ending the turn once it is spent.
+	 */
+	void charge(int b) {
+		if (!METERED) return;
+		used += b;
+		if (used > limit) throw TurnEndedError.INSTANCE;
+	}
+
+	void reset() {
+		used = 0;
+	}
+
+	int getUsed() {
+		return used;
+	}
+
+	int getLeft() {
+		return limit - used;
+	}
+
+	int getLimit() {
+		return limit;
+	}
+
+	void setUsed(int used) {
+		this.used = used;
+	}
+
+	void setLimit(int limit) {
+		this.limit = limit;
+	}
+
+}
@@ -0,0 +1,192 @@
+package battlecode.common;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Rewrites player classes so that executed bytecodes are charged to the
+ * running robot's budget. Each basic block gets a call to
+ * RobotMonitor.useBytecodes with its instruction count, placed right before
+ * the branch, return or throw that ends it (or before the label it falls
+ * through to), so the cost of a block is paid before control leaves it.
+ * <p>
+ * Built on ASM 9 (org.ow2.asm:asm), which must be on the class path at
+ * compile and run time.
+ */
+public class BytecodeCounter implements ClassFileTransformer {
+
+	private static final String MONITOR = "battlecode/common/RobotMonitor";
+	private static final int API = Opcodes.ASM9;
+
+	private final String[] packages;
+
+	/**
+	 * @param packages the packages whose classes are instrumented, for
+	 * example "examplefuncsplayer"; subpackages are included
+	 */
+	public BytecodeCounter(String... packages) {
+		this.packages = new String[packages.length];
+		for (int i = 0; i < packages.length; i++) {
+			this.packages[i] = packages[i].replace('.', '/') + "/";
+		}
+	}
+
+	/**
+	 * @param internalName a class name in internal form, e.g. "a/b/C"
+	 * @return whether the class belongs to one of the instrumented packages
+	 */
+	public boolean isInstrumented(String internalName) {
+		if (internalName == null) return false;
+		for (String p : packages) {
+			if (internalName.startsWith(p)) return true;
+		}
+		return false;
+	}
+
+	@Override
+	public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+			ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+		if (!BytecodeBudget.METERED || !isInstrumented(className)) return null;
+		return instrument(classfileBuffer);
+	}
+
+	/**
+	 * @param classfile the bytes of a class file
+	 * @return the bytes of the same class with bytecode accounting added, or
+	 * the bytes unchanged when running unmetered
+	 */
+	public byte[] instrument(byte[] classfile) {
+		if (!BytecodeBudget.METERED) return classfile;
+		ClassReader reader = new ClassReader(classfile);
+		ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+		reader.accept(new ClassVisitor(API, writer) {
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+				MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
+				return mv == null ? null : new CountingMethodVisitor(mv);
+			}
+		}, 0);
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Counts the instructions of the current block and emits the charge for
+	 * them whenever the block ends.
+	 */
+	private static class CountingMethodVisitor extends MethodVisitor {
+
+		private int pending;
+
+		CountingMethodVisitor(MethodVisitor mv) {
+			super(API, mv);
+		}
+
+		private void flush() {
+			if (pending == 0) return;
+			if (pending <= Short.MAX_VALUE) super.visitIntInsn(Opcodes.SIPUSH, pending);
+			else super.visitLdcInsn(pending);
+			super.visitMethodInsn(Opcodes.INVOKESTATIC, MONITOR, "useBytecodes", "(I)V", false);
+			pending = 0;
+		}
+
+		@Override
+		public void visitLabel(Label label) {
+			// only reached with a pending count if the previous instruction
+			// falls through, since every other block end has already flushed
+			flush();
+			super.visitLabel(label);
+		}
+
+		@Override
+		public void visitInsn(int opcode) {
+			pending++;
+			if ((opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) || opcode == Opcodes.ATHROW) flush();
+			super.visitInsn(opcode);
+		}
+
+		@Override
+		public void visitJumpInsn(int opcode, Label label) {
+			pending++;
+			flush();
+			super.visitJumpInsn(opcode, label);
+		}
+
+		@Override
+		public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+			pending++;
+			flush();
+			super.visitTableSwitchInsn(min, max, dflt, labels);
+		}
+
+		@Override
+		public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+			pending++;
+			flush();
+			super.visitLookupSwitchInsn(dflt, keys, labels);
+		}
+
+		@Override
+		public void visitIntInsn(int opcode, int operand) {
+			pending++;
+			super.visitIntInsn(opcode, operand);
+		}
+
+		@Override
+		public void visitVarInsn(int opcode, int var) {
+			pending++;
+			super.visitVarInsn(opcode, var);
+		}
+
+		@Override
+		public void visitTypeInsn(int opcode, String type) {
+			pending++;
+			super.visitTypeInsn(opcode, type);
+		}
+
+		@Override
+		public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+			pending++;
+			super.visitFieldInsn(opcode, owner, name, desc);
+		}
+
+		@Override
+		public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+			pending++;
+			super.visitMethodInsn(opcode, owner, name, desc, itf);
+		}
+
+		@Override
+		public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+			pending++;
+			super.visitInvokeDynamicInsn(name, desc, bsm, bsmArgs);
+		}
+
+		@Override
+		public void visitLdcInsn(Object cst) {
+			pending++;
+			super.visitLdcInsn(cst);
+		}
+
+		@Override
+		public void visitIincInsn(int var, int increment) {
+			pending++;
+			super.visitIincInsn(var, increment);
+		}
+
+		@Override
+		public void visitMultiANewArrayInsn(String desc, int dims) {
+			pending++;
+			super.visitMultiANewArrayInsn(desc, dims);
+		}
+
+	}
+
+}
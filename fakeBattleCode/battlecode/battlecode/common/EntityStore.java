@@ -0,0 +1,374 @@
+package battlecode.common;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Entity-component storage for every robot and tree on the map. An entity is
+ * a slot; each component is a dense primitive array indexed by slot, and an
+ * ID index maps entity IDs to slots. A body keeps its slot for as long as it
+ * lives, so hits and moves update health and position in place, and
+ * whole-world systems (see WorldSystems) are plain loops over the arrays.
+ * RobotInfo and TreeInfo are only built when a body is handed to a player.
+ * Slots of dead bodies are reused by later spawns.
+ * <p>
+ * A fork shares every component array with its parent. Components are
+ * copied in groups, by whichever of the two stores writes to a group first,
+ * so a fork that only moves robots copies positions and nothing else. A
+ * group is always copied whole, so the first write to a shared group costs
+ * as much as the store's capacity, not the number of bodies changed.
+ */
+class EntityStore {
+
+	static final byte FREE = 0, ROBOT = 1, TREE = 2;
+	/** Value of the type component for trees that contain no robot. */
+	static final byte NO_TYPE = -1;
+
+	/**
+	 * Component groups for copy-on-write. STRUCTURE is everything that only
+	 * changes when bodies spawn or die: kind, id, team, type, radius, the
+	 * counters, contained bullets, the free list and the ID index.
+	 */
+	static final int STRUCTURE = 1, POSITION = 2, HEALTH = 4, COOLDOWN = 8, BROADCAST = 16, ALL = 31;
+
+	private static final Team[] TEAMS = Team.values();
+	private static final RobotType[] TYPES = RobotType.values();
+
+	/** Every slot below this has been handed out at least once. */
+	private int high;
+	private int[] free = new int[16];
+	private int freeCount;
+	private IntIntMap slotByID = new IntIntMap();
+	/** Groups whose arrays may be shared with a fork. */
+	private int shared;
+
+	byte[] kind;
+	int[] id;
+	/** Team ordinal. */
+	byte[] team;
+	/** RobotType ordinal of a robot, or of the robot a tree contains. */
+	byte[] type;
+	float[] x, y, radius, health;
+	int[] attackCount, moveCount, containedBullets, buildCooldown;
+	/** Whether the robot has broadcast since the end of the last round. */
+	boolean[] broadcasting;
+
+	EntityStore() {
+		this(64);
+	}
+
+	EntityStore(int capacity) {
+		kind = new byte[capacity];
+		id = new int[capacity];
+		team = new byte[capacity];
+		type = new byte[capacity];
+		x = new float[capacity];
+		y = new float[capacity];
+		radius = new float[capacity];
+		health = new float[capacity];
+		attackCount = new int[capacity];
+		moveCount = new int[capacity];
+		containedBullets = new int[capacity];
+		buildCooldown = new int[capacity];
+		broadcasting = new boolean[capacity];
+	}
+
+	private EntityStore(EntityStore parent) {
+		high = parent.high;
+		free = parent.free;
+		freeCount = parent.freeCount;
+		slotByID = parent.slotByID;
+		kind = parent.kind;
+		id = parent.id;
+		team = parent.team;
+		type = parent.type;
+		x = parent.x;
+		y = parent.y;
+		radius = parent.radius;
+		health = parent.health;
+		attackCount = parent.attackCount;
+		moveCount = parent.moveCount;
+		containedBullets = parent.containedBullets;
+		buildCooldown = parent.buildCooldown;
+		broadcasting = parent.broadcasting;
+		shared = ALL;
+		parent.shared = ALL;
+	}
+
+	/**
+	 * @return a store with the same bodies in the same slots that shares
+	 * all of its arrays with this one until either writes to them
+	 */
+	EntityStore fork() {
+		return new EntityStore(this);
+	}
+
+	/**
+	 * Makes sure the arrays of the given component groups belong to this
+	 * store alone. Must be called before writing to them.
+	 */
+	void own(int groups) {
+		int copy = shared & groups;
+		if (copy == 0) return;
+		if ((copy & STRUCTURE) != 0) {
+			free = free.clone();
+			slotByID = new IntIntMap(slotByID);
+			kind = kind.clone();
+			id = id.clone();
+			team = team.clone();
+			type = type.clone();
+			radius = radius.clone();
+			attackCount = attackCount.clone();
+			moveCount = moveCount.clone();
+			containedBullets = containedBullets.clone();
+		}
+		if ((copy & POSITION) != 0) {
+			x = x.clone();
+			y = y.clone();
+		}
+		if ((copy & HEALTH) != 0) health = health.clone();
+		if ((copy & COOLDOWN) != 0) buildCooldown = buildCooldown.clone();
+		if ((copy & BROADCAST) != 0) broadcasting = broadcasting.clone();
+		shared &= ~copy;
+	}
+
+	void move(int s, float px, float py) {
+		own(POSITION);
+		x[s] = px;
+		y[s] = py;
+	}
+
+	void setHealth(int s, float h) {
+		own(HEALTH);
+		health[s] = h;
+	}
+
+	Team team(int s) {
+		return TEAMS[team[s]];
+	}
+
+	/**
+	 * @return the type of the robot in slot s, or of the robot contained in
+	 * the tree in slot s, or null
+	 */
+	RobotType type(int s) {
+		return type[s] == NO_TYPE ? null : TYPES[type[s]];
+	}
+
+	/**
+	 * @return the health the body in slot s has when undamaged, as in
+	 * RobotInfo and TreeInfo
+	 */
+	float maxHealth(int s) {
+		if (kind[s] == ROBOT) return TYPES[type[s]].maxHealth;
+		return team[s] == Team.NEUTRAL.ordinal() ? GameConstants.NEUTRAL_TREE_HEALTH_RATE * radius[s] : GameConstants.BULLET_TREE_MAX_HEALTH;
+	}
+
+	/**
+	 * Empties the tree in slot s of its bullets.
+	 *
+	 * @return the bullets it held
+	 */
+	int takeContainedBullets(int s) {
+		int bullets = containedBullets[s];
+		if (bullets == 0) return 0;
+		own(STRUCTURE);
+		containedBullets[s] = 0;
+		return bullets;
+	}
+
+	/**
+	 * @return one past the highest slot that may be in use; loops over all
+	 * bodies run over [0, end()) and skip FREE slots
+	 */
+	int end() {
+		return high;
+	}
+
+	/**
+	 * @return the slot of the body with the given ID, or -1
+	 */
+	int slotOf(int bodyID) {
+		return slotByID.get(bodyID);
+	}
+
+	/**
+	 * @return the slot of the robot with the given ID, or -1 if there is no
+	 * such robot
+	 */
+	int robotSlot(int bodyID) {
+		int s = slotByID.get(bodyID);
+		return s >= 0 && kind[s] == ROBOT ? s : -1;
+	}
+
+	/**
+	 * @return the slot of the tree with the given ID, or -1 if there is no
+	 * such tree
+	 */
+	int treeSlot(int bodyID) {
+		int s = slotByID.get(bodyID);
+		return s >= 0 && kind[s] == TREE ? s : -1;
+	}
+
+	int addRobot(RobotInfo r) {
+		own(ALL);
+		int s = allocate(r.ID, ROBOT);
+		team[s] = (byte)r.team.ordinal();
+		type[s] = (byte)r.type.ordinal();
+		x[s] = r.location.x;
+		y[s] = r.location.y;
+		radius[s] = r.type.bodyRadius;
+		health[s] = (float)r.health;
+		attackCount[s] = r.attackCount;
+		moveCount[s] = r.moveCount;
+		containedBullets[s] = 0;
+		buildCooldown[s] = 0;
+		broadcasting[s] = false;
+		return s;
+	}
+
+	int addTree(TreeInfo t) {
+		own(ALL);
+		int s = allocate(t.ID, TREE);
+		team[s] = (byte)t.team.ordinal();
+		type[s] = t.containedRobot == null ? NO_TYPE : (byte)t.containedRobot.ordinal();
+		x[s] = t.location.x;
+		y[s] = t.location.y;
+		radius[s] = t.radius;
+		health[s] = t.health;
+		attackCount[s] = 0;
+		moveCount[s] = 0;
+		containedBullets[s] = t.containedBullets;
+		buildCooldown[s] = 0;
+		broadcasting[s] = false;
+		return s;
+	}
+
+	void remove(int s) {
+		own(STRUCTURE);
+		slotByID.remove(id[s]);
+		kind[s] = FREE;
+		if (buildCooldown[s] != 0) {
+			own(COOLDOWN);
+			buildCooldown[s] = 0;
+		}
+		if (broadcasting[s]) {
+			own(BROADCAST);
+			broadcasting[s] = false;
+		}
+		if (freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+		free[freeCount++] = s;
+	}
+
+	RobotInfo robotInfo(int s) {
+		return new RobotInfo(id[s], team(s), type(s), new MapLocation(x[s], y[s]), health[s], attackCount[s], moveCount[s]);
+	}
+
+	TreeInfo treeInfo(int s) {
+		return new TreeInfo(id[s], team(s), new MapLocation(x[s], y[s]), radius[s], health[s], containedBullets[s], type(s));
+	}
+
+	/**
+	 * @return whether any part of the body in slot s lies within range of (px, py)
+	 */
+	boolean overlaps(int s, float px, float py, float range) {
+		return Geometry.circleOverlaps(px, py, range, x[s], y[s], radius[s]);
+	}
+
+	/**
+	 * @return whether the body in slot s and the circle at (px, py) overlap by
+	 * more than touching
+	 */
+	boolean intersects(int s, float px, float py, float r) {
+		float reach = r + radius[s];
+		return Geometry.distanceSquared(px, py, x[s], y[s]) < reach * reach;
+	}
+
+	/**
+	 * @return whether the point (px, py) lies inside the body in slot s
+	 */
+	boolean contains(int s, float px, float py) {
+		return Geometry.pointWithin(x[s], y[s], radius[s], px, py);
+	}
+
+	/**
+	 * @return the number of bytes write will produce
+	 */
+	int snapshotBytes() {
+		return 4 + 4 + freeCount * 4 + high * (4 * 1 + 4 + 4 * 4 + 4 * 4);
+	}
+
+	/**
+	 * Writes every slot below end(), free or not, and the free list, so a
+	 * store read back hands out the same slots in the same order.
+	 */
+	void write(ByteBuffer out) {
+		out.putInt(high).putInt(freeCount);
+		for (int i = 0; i < freeCount; i++) out.putInt(free[i]);
+		for (int s = 0; s < high; s++) {
+			out.put(kind[s]).put(team[s]).put(type[s]).put((byte)(broadcasting[s] ? 1 : 0));
+			out.putInt(id[s]).putFloat(x[s]).putFloat(y[s]).putFloat(radius[s]).putFloat(health[s]);
+			out.putInt(attackCount[s]).putInt(moveCount[s]).putInt(containedBullets[s]).putInt(buildCooldown[s]);
+		}
+	}
+
+	/**
+	 * Replaces the contents of this store, which must be empty, with what
+	 * write produced.
+	 */
+	void read(ByteBuffer in) {
+		int n = in.getInt();
+		freeCount = in.getInt();
+		if (free.length < freeCount) free = new int[freeCount];
+		for (int i = 0; i < freeCount; i++) free[i] = in.getInt();
+		while (id.length < n) grow();
+		high = n;
+		for (int s = 0; s < n; s++) {
+			kind[s] = in.get();
+			team[s] = in.get();
+			type[s] = in.get();
+			broadcasting[s] = in.get() != 0;
+			id[s] = in.getInt();
+			x[s] = in.getFloat();
+			y[s] = in.getFloat();
+			radius[s] = in.getFloat();
+			health[s] = in.getFloat();
+			attackCount[s] = in.getInt();
+			moveCount[s] = in.getInt();
+			containedBullets[s] = in.getInt();
+			buildCooldown[s] = in.getInt();
+			if (kind[s] != FREE) slotByID.put(id[s], s);
+		}
+	}
+
+	private int allocate(int bodyID, byte k) {
+		int s;
+		if (freeCount > 0) s = free[--freeCount];
+		else {
+			if (high == id.length) grow();
+			s = high++;
+		}
+		kind[s] = k;
+		id[s] = bodyID;
+		slotByID.put(bodyID, s);
+		return s;
+	}
+
+	private void grow() {
+		int capacity = id.length * 2;
+		kind = Arrays.copyOf(kind, capacity);
+		id = Arrays.copyOf(id, capacity);
+		team = Arrays.copyOf(team, capacity);
+		type = Arrays.copyOf(type, capacity);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		radius = Arrays.copyOf(radius, capacity);
+		health = Arrays.copyOf(health, capacity);
+		attackCount = Arrays.copyOf(attackCount, capacity);
+		moveCount = Arrays.copyOf(moveCount, capacity);
+		containedBullets = Arrays.copyOf(containedBullets, capacity);
+		buildCooldown = Arrays.copyOf(buildCooldown, capacity);
+		broadcasting = Arrays.copyOf(broadcasting, capacity);
+	}
+
+}
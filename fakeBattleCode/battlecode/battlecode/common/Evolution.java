@@ -0,0 +1,430 @@
+package battlecode.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * Evolves the parameters of a NeuralNetwork that plays whole teams through
+ * a NetworkPolicy. The population lives in one flat float array, a genome
+ * per row of getParameterCount() values, so a generation is a few large
+ * arrays rather than one object per network.
+ * <p>
+ * Each generation every genome plays the same games against a hall of fame
+ * holding the champions of the latest generations, which starts out with a
+ * network of zeros that never acts. Game k is played on the map built from
+ * the k-th seed of the generation, with the genome as team A when k is even
+ * and as team B when k is odd. Games 2j and 2j + 1 are against the j-th
+ * newest champion, wrapping around once the hall runs out, so the newest
+ * champions are met from both sides and 2 * hall size games meet them all.
+ * A genome's fitness is the fraction of its games it won.
+ * <p>
+ * All games of a generation are handed to the MatchFarm at once, so its
+ * workers always have queued matches until the last few finish. A worker
+ * that finishes a game writes the score to that game's own slot in an
+ * array and takes its next match; nothing is locked, and the scores are
+ * only summed once the whole generation has been played. The next
+ * generation keeps the best genomes unchanged and fills the rest with
+ * mutated copies of tournament winners.
+ * <p>
+ * Every draw comes from one GameRandom, and the games themselves are
+ * deterministic, so a run is reproduced exactly from its seed, or from a
+ * checkpoint, whatever the number of workers.
+ * <p>
+ * Usage: {@code java battlecode.common.Evolution [generations] [population] [games] [checkpoint directory]}
+ */
+public class Evolution {
+
+	static final int MAGIC = 0x41474342; // "BCGA" in file order
+	static final short VERSION = 1;
+	private static final int HEADER_BYTES = 4 + 2 + 4 * 3 + 8 + 4 * 3;
+
+	/** Standard deviation of the parameters of the first generation. */
+	private static final float INITIAL_DEVIATION = 0.5f;
+
+	private final NeuralNetwork shape;
+	private final Observation layout;
+	private final LongFunction<Map> maps;
+	private final MatchFarm farm;
+	private final int population, parameters;
+	private final GameRandom random;
+	private float[] genomes, offspring;
+	private final float[] fitness;
+	private final int[] ranking;
+	/** Champions of past generations, a ring of hallOfFame genomes. */
+	private float[] hall;
+	private int hallCount, hallNext;
+	private int generation;
+
+	private int games = 4;
+	private int elites = 2;
+	private int tournament = 3;
+	private float deviation = 0.05f;
+	private float mutationRate = 0.1f;
+	private Path checkpoints;
+
+	/**
+	 * Creates the first generation, with normally distributed parameters.
+	 *
+	 * @param shape a network with the layout's inputs and Action.SIZE
+	 * outputs; only its shape is used
+	 * @param layout the observation the networks read
+	 * @param maps builds the map of a game from its seed
+	 * @param farm plays the games
+	 * @param population the number of genomes in each generation
+	 * @param seed the seed of every random choice of the run
+	 */
+	public Evolution(NeuralNetwork shape, Observation layout, LongFunction<Map> maps, MatchFarm farm, int population, long seed) {
+		if (shape.getInputSize() != layout.size() || shape.getOutputSize() != Action.SIZE) {
+			throw new IllegalArgumentException("network must have " + layout.size() + " inputs and " + Action.SIZE + " outputs");
+		}
+		if (population < 2) throw new IllegalArgumentException("population must be at least 2");
+		this.shape = shape;
+		this.layout = layout;
+		this.maps = maps;
+		this.farm = farm;
+		this.population = population;
+		this.parameters = shape.getParameterCount();
+		this.random = new GameRandom(seed);
+		this.genomes = new float[population * parameters];
+		this.offspring = new float[population * parameters];
+		this.fitness = new float[population];
+		this.ranking = new int[population];
+		for (int i = 0; i < genomes.length; i++) {
+			genomes[i] = (float)random.nextGaussian() * INITIAL_DEVIATION;
+		}
+		setHallOfFame(4);
+	}
+
+	/**
+	 * Sets the number of games each genome plays per generation. Defaults
+	 * to 4.
+	 */
+	public void setGames(int games) {
+		if (games < 1) throw new IllegalArgumentException("games must be positive");
+		this.games = games;
+	}
+
+	/**
+	 * Sets how many of the best genomes pass to the next generation
+	 * unchanged. Defaults to 2.
+	 */
+	public void setElites(int elites) {
+		if (elites < 0 || elites > population) throw new IllegalArgumentException("elites must be between 0 and the population");
+		this.elites = elites;
+	}
+
+	/**
+	 * Sets how many genomes compete in each tournament that picks a parent.
+	 * Defaults to 3.
+	 */
+	public void setTournament(int tournament) {
+		if (tournament < 1) throw new IllegalArgumentException("tournament must be positive");
+		this.tournament = tournament;
+	}
+
+	/**
+	 * Sets the mutation of offspring: each parameter is changed with the
+	 * given probability, by a normally distributed amount with the given
+	 * standard deviation. Defaults to 0.1 and 0.05.
+	 */
+	public void setMutation(float rate, float deviation) {
+		this.mutationRate = rate;
+		this.deviation = deviation;
+	}
+
+	/**
+	 * Sets how many past champions the hall of fame keeps, and empties it
+	 * down to the network of zeros. Genomes meet the newest champions first,
+	 * two games each. Defaults to 4.
+	 */
+	public void setHallOfFame(int size) {
+		if (size < 1) throw new IllegalArgumentException("hall of fame size must be positive");
+		hall = new float[size * parameters];
+		hallCount = 1;
+		hallNext = 1 % size;
+	}
+
+	/**
+	 * Writes a checkpoint into the given directory at the start of every
+	 * generation, or none if it is null.
+	 */
+	public void setCheckpoints(Path directory) {
+		this.checkpoints = directory;
+	}
+
+	public int getGeneration() {
+		return generation;
+	}
+
+	public int getPopulation() {
+		return population;
+	}
+
+	public int getParameterCount() {
+		return parameters;
+	}
+
+	/**
+	 * Copies the parameters of genome i of the current generation into
+	 * dest, starting at offset.
+	 */
+	public void getGenome(int i, float[] dest, int offset) {
+		System.arraycopy(genomes, i * parameters, dest, offset, parameters);
+	}
+
+	/**
+	 * Copies the parameters of the champion of the last generation played
+	 * into dest, starting at offset. Before the first generation this is the
+	 * network of zeros.
+	 */
+	public void getChampion(float[] dest, int offset) {
+		int last = (hallNext + hall.length / parameters - 1) % (hall.length / parameters);
+		System.arraycopy(hall, last * parameters, dest, offset, parameters);
+	}
+
+	/**
+	 * @return the fitness of genome i of the last generation played, which
+	 * the current generation was bred from
+	 */
+	public float getFitness(int i) {
+		return fitness[i];
+	}
+
+	/**
+	 * @return a network with the given parameters and the shape of the
+	 * evolved ones
+	 */
+	public NeuralNetwork network(float[] src, int offset) {
+		NeuralNetwork n = shape.copy();
+		n.setParameters(src, offset);
+		return n;
+	}
+
+	/**
+	 * Plays and breeds one generation: checkpoints it if a directory is set,
+	 * plays every genome's games, adds the fittest genome to the hall of
+	 * fame and replaces the population with its offspring.
+	 *
+	 * @return the fitness of the fittest genome
+	 * @throws IOException if the checkpoint cannot be written
+	 */
+	public float runGeneration() throws IOException {
+		if (checkpoints != null) save(checkpoints.resolve(String.format("generation-%05d.bcga", generation)));
+		evaluate();
+		rank();
+		int best = ranking[0];
+		System.arraycopy(genomes, best * parameters, hall, hallNext * parameters, parameters);
+		int size = hall.length / parameters;
+		hallNext = (hallNext + 1) % size;
+		if (hallCount < size) hallCount++;
+		breed();
+		generation++;
+		return fitness[best];
+	}
+
+	/**
+	 * Plays every genome's games for this generation and sets fitness.
+	 */
+	private void evaluate() {
+		long base = random.nextLong();
+		final float[] current = genomes;
+		final float[] opponents = hall.clone();
+		final int count = games;
+		int size = hall.length / parameters;
+		int[] opponent = new int[count];
+		for (int k = 0; k < count; k++) {
+			// back from the newest champion, a pair of games each
+			opponent[k] = (hallNext - 1 - k / 2 % hallCount + size) % size;
+		}
+		final float[] scores = new float[population * count];
+		List<Match> matches = new ArrayList<>(scores.length);
+		for (int i = 0; i < population; i++) {
+			for (int k = 0; k < count; k++) {
+				final long seed = base + k;
+				Supplier<BatchPolicy> genome = policy(current, i * parameters);
+				Supplier<BatchPolicy> rival = policy(opponents, opponent[k] * parameters);
+				Supplier<Map> map = () -> maps.apply(seed);
+				matches.add(k % 2 == 0 ? new Match(map, genome, rival) : new Match(map, rival, genome));
+			}
+		}
+		farm.playAll(matches, (index, result) -> {
+			Team side = index % count % 2 == 0 ? Team.A : Team.B;
+			scores[index] = result.winner == side ? 1 : 0;
+		});
+		for (int i = 0; i < population; i++) {
+			float sum = 0;
+			for (int k = 0; k < count; k++) {
+				sum += scores[i * count + k];
+			}
+			fitness[i] = sum / count;
+		}
+	}
+
+	/**
+	 * @return a supplier of policies playing the genome at offset in src,
+	 * each with a network of its own
+	 */
+	private Supplier<BatchPolicy> policy(float[] src, int offset) {
+		return () -> new NetworkPolicy(layout, network(src, offset));
+	}
+
+	/**
+	 * Orders genome indices by fitness, fittest first and ties by index.
+	 */
+	private void rank() {
+		for (int i = 0; i < population; i++) {
+			int j = i;
+			for (; j > 0 && fitness[ranking[j - 1]] < fitness[i]; j--) {
+				ranking[j] = ranking[j - 1];
+			}
+			ranking[j] = i;
+		}
+	}
+
+	/**
+	 * Replaces the population with the elites and mutated copies of
+	 * tournament winners.
+	 */
+	private void breed() {
+		for (int i = 0; i < population; i++) {
+			int parent = i < elites ? ranking[i] : select();
+			int dst = i * parameters;
+			System.arraycopy(genomes, parent * parameters, offspring, dst, parameters);
+			if (i < elites) continue;
+			for (int p = dst; p < dst + parameters; p++) {
+				if (random.nextFloat() < mutationRate) offspring[p] += (float)random.nextGaussian() * deviation;
+			}
+		}
+		float[] swap = genomes;
+		genomes = offspring;
+		offspring = swap;
+	}
+
+	/**
+	 * @return the fittest of tournament genomes drawn at random, the lowest
+	 * index among equals
+	 */
+	private int select() {
+		int best = random.nextInt(population);
+		for (int t = 1; t < tournament; t++) {
+			int c = random.nextInt(population);
+			if (fitness[c] > fitness[best] || (fitness[c] == fitness[best] && c < best)) best = c;
+		}
+		return best;
+	}
+
+	/**
+	 * Writes everything needed to continue the run from the current
+	 * generation: the generator, the population and the hall of fame. The
+	 * file is written next to its destination and then moved over it, so a
+	 * crash never leaves a partial checkpoint behind. It is little-endian:
+	 * <pre>
+	 * int magic, short version, int generation, int population,
+	 * int parameters, long random, int hallSize, int hallCount, int hallNext,
+	 * float genomes[population * parameters], float hall[hallSize * parameters]
+	 * </pre>
+	 */
+	public void save(Path file) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + 4 * (genomes.length + hall.length)).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(MAGIC).putShort(VERSION).putInt(generation).putInt(population).putInt(parameters);
+		buf.putLong(random.getState()).putInt(hall.length / parameters).putInt(hallCount).putInt(hallNext);
+		buf.asFloatBuffer().put(genomes).put(hall);
+		buf.position(buf.limit());
+		buf.flip();
+		Path dir = file.toAbsolutePath().getParent();
+		if (dir != null) Files.createDirectories(dir);
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buf.hasRemaining()) channel.write(buf);
+			channel.force(false);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Continues the run from a checkpoint written by save, replacing the
+	 * population, the hall of fame and the generator. Fitness is not kept.
+	 *
+	 * @throws IOException if the file is not a checkpoint of a run with
+	 * this population and network shape
+	 */
+	public void load(Path file) throws IOException {
+		ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+		if (buf.remaining() < HEADER_BYTES || buf.getInt() != MAGIC) throw new IOException("not a checkpoint: " + file);
+		short version = buf.getShort();
+		if (version != VERSION) throw new IOException("unsupported checkpoint version " + version);
+		int gen = buf.getInt();
+		if (buf.getInt() != population || buf.getInt() != parameters) throw new IOException("checkpoint is of another population or network shape: " + file);
+		long state = buf.getLong();
+		int size = buf.getInt(), count = buf.getInt(), next = buf.getInt();
+		if (size < 1 || count < 1 || count > size || next < 0 || next >= size || buf.remaining() != 4L * (genomes.length + (long)size * parameters)) {
+			throw new IOException("checkpoint is truncated: " + file);
+		}
+		float[] h = new float[size * parameters];
+		buf.asFloatBuffer().get(genomes).get(h);
+		hall = h;
+		hallCount = count;
+		hallNext = next;
+		random.setState(state);
+		generation = gen;
+	}
+
+	/**
+	 * Builds a small symmetric map for a game: each team has an archon, a
+	 * gardener, a lumberjack and two soldiers, with neutral trees scattered
+	 * between them by the seed.
+	 */
+	static Map arena(long seed) {
+		LinkedList<RobotInfo> robots = new LinkedList<>();
+		LinkedList<TreeInfo> trees = new LinkedList<>();
+		RobotType[] types = {RobotType.ARCHON, RobotType.GARDENER, RobotType.LUMBERJACK, RobotType.SOLDIER, RobotType.SOLDIER};
+		int id = 1;
+		for (int i = 0; i < types.length; i++) {
+			float y = 10 + i * 5;
+			robots.add(new RobotInfo(id++, Team.A, types[i], new MapLocation(8, y), types[i].maxHealth, 0, 0));
+			robots.add(new RobotInfo(id++, Team.B, types[i], new MapLocation(42, 50 - y), types[i].maxHealth, 0, 0));
+		}
+		GameRandom random = new GameRandom(seed);
+		for (int i = 0; i < 6; i++) {
+			float x = 16 + random.nextFloat() * 8, y = 4 + random.nextFloat() * 42;
+			float radius = 1 + random.nextFloat() * 2;
+			trees.add(new TreeInfo(id++, Team.NEUTRAL, new MapLocation(x, y), radius, GameConstants.NEUTRAL_TREE_HEALTH_RATE * radius, 0, null));
+			trees.add(new TreeInfo(id++, Team.NEUTRAL, new MapLocation(50 - x, 50 - y), radius, GameConstants.NEUTRAL_TREE_HEALTH_RATE * radius, 0, null));
+		}
+		return new Map(50, 50, 500, new MapLocation(0, 0), trees, robots, seed);
+	}
+
+	public static void main(String[] args) throws IOException {
+		int generations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int population = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+		int games = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		Observation layout = new Observation(4, 2, 4);
+		NeuralNetwork shape = new NeuralNetwork(NeuralNetwork.Activation.TANH, NeuralNetwork.Activation.TANH, layout.size(), 32, Action.SIZE);
+		try (MatchFarm farm = new MatchFarm()) {
+			Evolution evolution = new Evolution(shape, layout, Evolution::arena, farm, population, GameConstants.GAME_DEFAULT_SEED);
+			evolution.setGames(games);
+			if (args.length > 3) evolution.setCheckpoints(Paths.get(args[3]));
+			System.out.printf("%s, %d genomes, %d games each, %d workers%n", shape, population, games, farm.getWorkers());
+			for (int g = 0; g < generations; g++) {
+				long start = System.nanoTime();
+				float best = evolution.runGeneration();
+				float mean = 0;
+				for (int i = 0; i < population; i++) mean += evolution.getFitness(i);
+				System.out.printf("generation %d: best %.2f, mean %.2f, %.0f ms%n", g, best, mean / population, (System.nanoTime() - start) / 1e6);
+			}
+		}
+	}
+
+}
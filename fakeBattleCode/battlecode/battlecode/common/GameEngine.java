@@ -0,0 +1,240 @@
+package battlecode.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Runs a match on a Map without a client or server. Every robot gets a
+ * Player from its team's factory and one turn per round under its
+ * RobotType.bytecodeLimit; after all turns the map advances a round and the
+ * victory conditions are checked. Teams can instead be played by a
+ * BatchPolicy each, which evaluates one network per round for all robots.
+ */
+public class GameEngine {
+
+	private final Map map;
+	private final PlayerFactory teamA, teamB;
+	private final BatchPolicy policyA, policyB;
+	/** Observations, then outputs, of the robots using each network, row by row. */
+	private float[][] features = new float[2][0], outputs = new float[2][0];
+	/** For each controller, the network group and row it reads its outputs from. */
+	private int[] groups = new int[0], rows = new int[0];
+	private final ArrayList<RobotController> controllers = new ArrayList<>();
+	private final ArrayList<Player> players = new ArrayList<>();
+	private final IntHashMap<RobotController> controllersByID = new IntHashMap<>();
+
+	public GameEngine(Map map, PlayerFactory teamA, PlayerFactory teamB) {
+		this.map = map;
+		this.teamA = teamA;
+		this.teamB = teamB;
+		this.policyA = null;
+		this.policyB = null;
+	}
+	
+	/**
+	 * Creates an engine in which both teams are played by batched network
+	 * policies. The policies may share a network, in which case it is
+	 * evaluated once per round for both teams together.
+	 */
+	public GameEngine(Map map, BatchPolicy teamA, BatchPolicy teamB) {
+		this.map = map;
+		this.teamA = null;
+		this.teamB = null;
+		this.policyA = teamA;
+		this.policyB = teamB;
+	}
+
+	public Map getMap() {
+		return map;
+	}
+
+	/**
+	 * Plays rounds until the match is decided.
+	 *
+	 * @return the result of the match
+	 */
+	public GameResult run() {
+		GameResult result = null;
+		while (result == null) {
+			result = runRound();
+		}
+		return result;
+	}
+
+	/**
+	 * Plays a single round: one turn for every living robot in spawn order,
+	 * then the map's end-of-round update.
+	 *
+	 * @return the result if the match ended this round, otherwise null
+	 */
+	public GameResult runRound() {
+		spawnPlayers();
+		if (policyA != null) observeAndInfer();
+		int alive = 0;
+		for (int i = 0; i < controllers.size(); i++) {
+			RobotController rc = controllers.get(i);
+			if (policyA != null ? runAct(rc, i) : runTurn(rc, players.get(i))) {
+				controllers.set(alive, rc);
+				players.set(alive, players.get(i));
+				alive++;
+			} else {
+				controllersByID.remove(rc.getRobotID());
+			}
+		}
+		while (controllers.size() > alive) {
+			controllers.remove(controllers.size() - 1);
+			players.remove(players.size() - 1);
+		}
+		map.addRound();
+		return checkVictory();
+	}
+
+	/**
+	 * Creates controllers and players for robots that do not have one yet,
+	 * which is every robot in the first round and new spawns after that.
+	 */
+	private void spawnPlayers() {
+		EntityStore bodies = map.bodies;
+		for (int s = 0, end = bodies.end(); s < end; s++) {
+			if (bodies.kind[s] != EntityStore.ROBOT || !bodies.team(s).isPlayer() || controllersByID.containsKey(bodies.id[s])) continue;
+			RobotInfo r = bodies.robotInfo(s);
+			RobotController rc = new RobotController(map, r);
+			controllersByID.put(r.ID, rc);
+			controllers.add(rc);
+			players.add(policyA != null ? null : (r.team == Team.A ? teamA : teamB).create(r));
+		}
+	}
+
+	/**
+	 * Runs one turn of the given robot.
+	 *
+	 * @return whether the robot is still alive afterwards
+	 */
+	private boolean runTurn(RobotController rc, Player player) {
+		if (!rc.beginTurn()) return false;
+		try {
+			player.runTurn(rc);
+		} catch (TurnEndedError e) {
+			// out of bytecodes, the rest of the turn is lost
+		} catch (GameActionException e) {
+			// an unhandled failed action only ends the turn
+		} catch (RuntimeException e) {
+			rc.destroy();
+		} finally {
+			rc.endTurn();
+		}
+		return rc.isAlive();
+	}
+
+	/**
+	 * The first two phases of a batched round: every robot writes its
+	 * observation in its turn, then each network runs once over all of its
+	 * rows.
+	 */
+	private void observeAndInfer() {
+		NeuralNetwork[] networks = {policyA.getNetwork(), policyB.getNetwork()};
+		boolean shared = networks[0] == networks[1];
+		int n = controllers.size();
+		if (groups.length < n) {
+			groups = new int[n];
+			rows = new int[n];
+		}
+		int[] count = new int[2];
+		for (int i = 0; i < n; i++) {
+			int g = controllers.get(i).getRobotTeam() == Team.A || shared ? 0 : 1;
+			groups[i] = g;
+			rows[i] = count[g]++;
+		}
+		for (int g = 0; g < 2; g++) {
+			NeuralNetwork net = networks[g];
+			if (features[g].length < count[g] * net.getInputSize()) features[g] = new float[count[g] * net.getInputSize()];
+			else Arrays.fill(features[g], 0, count[g] * net.getInputSize(), 0);
+			if (outputs[g].length < count[g] * net.getOutputSize()) outputs[g] = new float[count[g] * net.getOutputSize()];
+		}
+		for (int i = 0; i < n; i++) {
+			RobotController rc = controllers.get(i);
+			if (!rc.beginTurn()) continue;
+			BatchPolicy policy = rc.getRobotTeam() == Team.A ? policyA : policyB;
+			try {
+				policy.observe(rc, features[groups[i]], rows[i] * networks[groups[i]].getInputSize());
+			} catch (TurnEndedError e) {
+				// out of bytecodes; act still runs but has nothing left to spend
+			} catch (GameActionException e) {
+				// keep what was written
+			} catch (RuntimeException e) {
+				rc.destroy();
+			} finally {
+				rc.endTurn();
+			}
+		}
+		for (int g = 0; g < (shared ? 1 : 2); g++) {
+			networks[g].forward(features[g], count[g], outputs[g]);
+		}
+	}
+	
+	/**
+	 * The last phase of a batched round for the controller at index i: the
+	 * robot acts on its outputs in the rest of its turn.
+	 *
+	 * @return whether the robot is still alive afterwards
+	 */
+	private boolean runAct(RobotController rc, int i) {
+		if (!rc.resumeTurn()) return false;
+		BatchPolicy policy = rc.getRobotTeam() == Team.A ? policyA : policyB;
+		NeuralNetwork net = policy.getNetwork();
+		try {
+			policy.act(rc, outputs[groups[i]], rows[i] * net.getOutputSize());
+		} catch (TurnEndedError e) {
+			// out of bytecodes, the rest of the turn is lost
+		} catch (GameActionException e) {
+			// an unhandled failed action only ends the turn
+		} catch (RuntimeException e) {
+			rc.destroy();
+		} finally {
+			rc.endTurn();
+		}
+		return rc.isAlive();
+	}
+	
+	/**
+	 * Decides the match from the state of the map after the end-of-round
+	 * update, so robots destroyed by later turns or by the bullet phase are
+	 * no longer counted.
+	 */
+	private GameResult checkVictory() {
+		int aliveA = 0, aliveB = 0;
+		EntityStore bodies = map.bodies;
+		for (int s = 0, end = bodies.end(); s < end; s++) {
+			if (bodies.kind[s] != EntityStore.ROBOT) continue;
+			if (bodies.team[s] == Team.A.ordinal()) aliveA++;
+			else if (bodies.team[s] == Team.B.ordinal()) aliveB++;
+		}
+		int rounds = map.getRoundsPassed();
+		int vpA = map.getVictoryPoints(Team.A);
+		int vpB = map.getVictoryPoints(Team.B);
+		if (aliveA == 0 && aliveB > 0) return new GameResult(Team.B, GameResult.Reason.DESTROYED, rounds, vpA, vpB);
+		if (aliveB == 0 && aliveA > 0) return new GameResult(Team.A, GameResult.Reason.DESTROYED, rounds, vpA, vpB);
+		if (vpA != vpB && Math.max(vpA, vpB) >= GameConstants.VICTORY_POINTS_TO_WIN) {
+			return new GameResult(vpA > vpB ? Team.A : Team.B, GameResult.Reason.VICTORY_POINTS, rounds, vpA, vpB);
+		}
+		if (rounds >= map.getRounds() || (aliveA == 0 && aliveB == 0)) {
+			return new GameResult(tiebreak(), GameResult.Reason.TIEBREAK, rounds, vpA, vpB);
+		}
+		return null;
+	}
+
+	/**
+	 * Decides a match that ran out of rounds: most victory points, then the
+	 * largest bullet supply, then a coin flip drawn from the map's generator.
+	 */
+	private Team tiebreak() {
+		int vpA = map.getVictoryPoints(Team.A);
+		int vpB = map.getVictoryPoints(Team.B);
+		if (vpA != vpB) return vpA > vpB ? Team.A : Team.B;
+		double bulletsA = map.getBullets(Team.A);
+		double bulletsB = map.getBullets(Team.B);
+		if (bulletsA != bulletsB) return bulletsA > bulletsB ? Team.A : Team.B;
+		return map.getRandom().nextBoolean() ? Team.A : Team.B;
+	}
+
+}
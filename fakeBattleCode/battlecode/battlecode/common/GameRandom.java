@@ -0,0 +1,98 @@
+package battlecode.common;
+
+/**
+ * The random number generator of a single match. It uses the SplitMix64
+ * algorithm of java.util.SplittableRandom, but its whole state is one long
+ * that the engine can read back and restore. Every Map owns its own
+ * generator, so matches that share a JVM never contend on one, and a match
+ * played from the same seed always makes the same draws.
+ * <p>
+ * Not thread safe; use split() to hand another thread its own generator.
+ */
+public class GameRandom {
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long state;
+
+	/**
+	 * Creates a generator seeded with GameConstants.GAME_DEFAULT_SEED.
+	 */
+	public GameRandom() {
+		this(GameConstants.GAME_DEFAULT_SEED);
+	}
+
+	public GameRandom(long seed) {
+		this.state = seed;
+	}
+
+	public long nextLong() {
+		long z = (state += GOLDEN_GAMMA);
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	public int nextInt() {
+		return (int)(nextLong() >>> 32);
+	}
+
+	/**
+	 * @return a uniform value in [0, bound)
+	 */
+	public int nextInt(int bound) {
+		if (bound <= 0) throw new IllegalArgumentException("bound must be positive");
+		// multiply-shift maps 32 random bits onto [0, bound) without division
+		return (int)(((nextLong() >>> 32) * bound) >>> 32);
+	}
+
+	/**
+	 * @return a uniform value in [0, 1)
+	 */
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * @return a uniform value in [0, 1)
+	 */
+	public float nextFloat() {
+		return (nextLong() >>> 40) * 0x1.0p-24f;
+	}
+
+	public boolean nextBoolean() {
+		return nextLong() < 0;
+	}
+
+	/**
+	 * @return a normally distributed value with mean 0 and standard
+	 * deviation 1, by the polar method; the second value each draw yields is
+	 * discarded so the state stays a single long
+	 */
+	public double nextGaussian() {
+		double u, v, s;
+		do {
+			u = 2 * nextDouble() - 1;
+			v = 2 * nextDouble() - 1;
+			s = u * u + v * v;
+		} while (s >= 1 || s == 0);
+		return u * StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+	}
+
+	/**
+	 * @return a new generator whose draws are independent of this one's,
+	 * itself seeded deterministically from this generator
+	 */
+	public GameRandom split() {
+		return new GameRandom(nextLong());
+	}
+
+	long getState() {
+		return state;
+	}
+
+	void setState(long state) {
+		this.state = state;
+	}
+
+}
@@ -0,0 +1,80 @@
+package battlecode.common;
+
+/**
+ * The outcome of a match run by the GameEngine.
+ */
+public class GameResult {
+
+	/**
+	 * How the match was decided.
+	 */
+	public enum Reason {
+		/** The losing team had no robots left. */
+		DESTROYED,
+		/** The winning team reached GameConstants.VICTORY_POINTS_TO_WIN. */
+		VICTORY_POINTS,
+		/** The round limit was reached and the tiebreakers decided the match. */
+		TIEBREAK,
+	}
+
+	/**
+	 * The team that won the match.
+	 */
+	public final Team winner;
+
+	/**
+	 * How the match was decided.
+	 */
+	public final Reason reason;
+
+	/**
+	 * The number of rounds that were played.
+	 */
+	public final int rounds;
+
+	/**
+	 * The victory points of team A and team B at the end of the match.
+	 */
+	public final int teamAVictoryPoints, teamBVictoryPoints;
+
+	public GameResult(Team winner, Reason reason, int rounds, int teamAVictoryPoints, int teamBVictoryPoints) {
+		this.winner = winner;
+		this.reason = reason;
+		this.rounds = rounds;
+		this.teamAVictoryPoints = teamAVictoryPoints;
+		this.teamBVictoryPoints = teamBVictoryPoints;
+	}
+
+	/**
+	 * @return the team that won the match
+	 */
+	public Team getWinner() {
+		return winner;
+	}
+
+	/**
+	 * @return how the match was decided
+	 */
+	public Reason getReason() {
+		return reason;
+	}
+
+	/**
+	 * @return the number of rounds that were played
+	 */
+	public int getRounds() {
+		return rounds;
+	}
+
+	@Override
+	public String toString() {
+		return "GameResult{" +
+				"winner=" + winner +
+				", reason=" + reason +
+				", rounds=" + rounds +
+				", teamAVictoryPoints=" + teamAVictoryPoints +
+				", teamBVictoryPoints=" + teamBVictoryPoints +
+				'}';
+	}
+
+}
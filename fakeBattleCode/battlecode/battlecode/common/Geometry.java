@@ -0,0 +1,46 @@
+package battlecode.common;
+
+/**
+ * Allocation-free distance tests shared by the sensing and movement code.
+ * Everything compares squared distances, so no test takes a square root.
+ */
+final class Geometry {
+
+	private Geometry() {
+	}
+
+	/**
+	 * @return the squared distance between (x0, y0) and (x1, y1)
+	 */
+	static float distanceSquared(float x0, float y0, float x1, float y1) {
+		float dx = x1 - x0;
+		float dy = y1 - y0;
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * @return whether the point (px, py) lies within range of (x, y)
+	 */
+	static boolean pointWithin(float x, float y, float range, float px, float py) {
+		return distanceSquared(x, y, px, py) <= range * range;
+	}
+
+	/**
+	 * @return whether any part of the circle at (cx, cy) with radius r lies
+	 * within range of (x, y)
+	 */
+	static boolean circleOverlaps(float x, float y, float range, float cx, float cy, float r) {
+		float reach = range + r;
+		return distanceSquared(x, y, cx, cy) <= reach * reach;
+	}
+
+	/**
+	 * @return whether all of the circle at (cx, cy) with radius r lies within
+	 * range of (x, y)
+	 */
+	static boolean circleInside(float x, float y, float range, float cx, float cy, float r) {
+		float slack = range - r;
+		return slack >= 0 && distanceSquared(x, y, cx, cy) <= slack * slack;
+	}
+
+}
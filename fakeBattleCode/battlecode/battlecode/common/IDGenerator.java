@@ -0,0 +1,36 @@
+package battlecode.common;
+
+/**
+ * Hands out entity IDs for a single map. IDs come from a monotonic counter
+ * that starts above every robot and tree the map was created with, so each
+ * call is O(1) and an ID is never reused within a game.
+ */
+class IDGenerator {
+
+	private int next;
+
+	IDGenerator(int firstID) {
+		this.next = firstID;
+	}
+
+	int nextID() {
+		if (next == Integer.MAX_VALUE) throw new IllegalStateException("Out of entity IDs");
+		return next++;
+	}
+
+	/**
+	 * @return the ID the next call to nextID will return
+	 */
+	int peek() {
+		return next;
+	}
+
+	/**
+	 * Makes sure future IDs are larger than the given one, for bodies that
+	 * are added to the map with an ID chosen elsewhere.
+	 */
+	void reserve(int id) {
+		if (id >= next) next = id + 1;
+	}
+
+}
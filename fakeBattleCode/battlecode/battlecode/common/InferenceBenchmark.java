@@ -0,0 +1,55 @@
+package battlecode.common;
+
+import java.util.Random;
+
+/**
+ * Times one round of network inference for a team of robots, done one robot
+ * at a time and as a single batch, with the same network and inputs.
+ * <p>
+ * Usage: {@code java battlecode.common.InferenceBenchmark [robots] [layer sizes...]}
+ */
+public class InferenceBenchmark {
+
+	public static void main(String[] args) {
+		int robots = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int[] sizes = {64, 128, 64, 16};
+		if (args.length > 2) {
+			sizes = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++) sizes[i - 1] = Integer.parseInt(args[i]);
+		}
+		NeuralNetwork net = new NeuralNetwork(NeuralNetwork.Activation.RELU, NeuralNetwork.Activation.TANH, sizes);
+		Random random = new Random(GameConstants.GAME_DEFAULT_SEED);
+		float[] parameters = new float[net.getParameterCount()];
+		for (int i = 0; i < parameters.length; i++) parameters[i] = (float)random.nextGaussian() * 0.1f;
+		net.setParameters(parameters, 0);
+		float[] in = new float[robots * net.getInputSize()];
+		for (int i = 0; i < in.length; i++) in[i] = random.nextFloat();
+		float[] out = new float[robots * net.getOutputSize()];
+		for (int warmup = 0; warmup < 200; warmup++) {
+			single(net, in, robots, out);
+			net.forward(in, robots, out);
+		}
+		int rounds = 1000;
+		long start = System.nanoTime();
+		for (int r = 0; r < rounds; r++) single(net, in, robots, out);
+		double single = (System.nanoTime() - start) / 1e6 / rounds;
+		start = System.nanoTime();
+		for (int r = 0; r < rounds; r++) net.forward(in, robots, out);
+		double batched = (System.nanoTime() - start) / 1e6 / rounds;
+		System.out.printf("%s, %d robots%n", net, robots);
+		System.out.printf("per robot: %.3f ms/round%n", single);
+		System.out.printf("batched:   %.3f ms/round%n", batched);
+		System.out.printf("speedup:   %.2fx%n", single / batched);
+	}
+
+	private static void single(NeuralNetwork net, float[] in, int robots, float[] out) {
+		float[] row = new float[net.getInputSize()];
+		float[] result = new float[net.getOutputSize()];
+		for (int r = 0; r < robots; r++) {
+			System.arraycopy(in, r * row.length, row, 0, row.length);
+			net.forward(row, result);
+			System.arraycopy(result, 0, out, r * result.length, result.length);
+		}
+	}
+
+}
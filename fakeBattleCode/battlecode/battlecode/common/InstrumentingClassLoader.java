@@ -0,0 +1,73 @@
+package battlecode.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads player classes with bytecode accounting added, without needing the
+ * JVM to be started with BytecodeAgent. Classes outside the instrumented
+ * packages are left to the parent loader, so the engine and player code share
+ * one copy of battlecode.common.
+ */
+public class InstrumentingClassLoader extends ClassLoader {
+
+	private final BytecodeCounter counter;
+
+	/**
+	 * @param parent the loader that can find both the engine and the player classes
+	 * @param packages the player packages to instrument
+	 */
+	public InstrumentingClassLoader(ClassLoader parent, String... packages) {
+		super(parent);
+		this.counter = new BytecodeCounter(packages);
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		if (!counter.isInstrumented(name.replace('.', '/'))) return super.loadClass(name, resolve);
+		synchronized (getClassLoadingLock(name)) {
+			Class<?> c = findLoadedClass(name);
+			if (c == null) c = findClass(name);
+			if (resolve) resolveClass(c);
+			return c;
+		}
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+			if (in == null) throw new ClassNotFoundException(name);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int n; (n = in.read(buffer)) > 0; ) {
+				bytes.write(buffer, 0, n);
+			}
+			byte[] instrumented = counter.instrument(bytes.toByteArray());
+			return defineClass(name, instrumented, 0, instrumented.length);
+		} catch (IOException e) {
+			throw new ClassNotFoundException(name, e);
+		}
+	}
+
+	/**
+	 * Returns a factory that gives every robot a fresh instance of the named
+	 * class, loaded through this loader. The class must implement Player and
+	 * have a public constructor taking no arguments.
+	 *
+	 * @param className the fully qualified name of the player class
+	 * @return a factory for the instrumented player
+	 * @throws ClassNotFoundException if the class cannot be found
+	 */
+	public PlayerFactory playerFactory(String className) throws ClassNotFoundException {
+		final Class<? extends Player> c = loadClass(className).asSubclass(Player.class);
+		return robot -> {
+			try {
+				return c.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException("Cannot create player " + className, e);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,115 @@
+package battlecode.common;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from int keys to non-null values, used to find
+ * entities by ID without boxing the key or walking a list. Linear probing
+ * with backward-shift deletion, so removals leave no tombstones behind.
+ */
+class IntHashMap<V> {
+
+	private int[] keys;
+	private Object[] values;
+	private int size;
+
+	IntHashMap() {
+		this(16);
+	}
+
+	IntHashMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+		keys = new int[capacity];
+		values = new Object[capacity];
+	}
+
+	int size() {
+		return size;
+	}
+
+	@SuppressWarnings("unchecked")
+	V get(int key) {
+		int mask = keys.length - 1;
+		for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) return (V)values[i];
+		}
+		return null;
+	}
+
+	boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * @return the value previously mapped to key, or null
+	 */
+	@SuppressWarnings("unchecked")
+	V put(int key, V value) {
+		if (value == null) throw new NullPointerException("IntHashMap values cannot be null");
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		for (; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				V old = (V)values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size * 2 > keys.length) rehash(keys.length * 2);
+		return null;
+	}
+
+	/**
+	 * @return the value that was mapped to key, or null
+	 */
+	@SuppressWarnings("unchecked")
+	V remove(int key) {
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		for (; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) break;
+		}
+		V old = (V)values[i];
+		if (old == null) return null;
+		size--;
+		// pull later entries of the probe run back so lookups never stop early
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+			int home = slot(keys[j], mask);
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		values[i] = null;
+		return old;
+	}
+
+	void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[capacity];
+		values = new Object[capacity];
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldValues[j] == null) continue;
+			int i = slot(oldKeys[j], mask);
+			while (values[i] != null) i = (i + 1) & mask;
+			keys[i] = oldKeys[j];
+			values[i] = oldValues[j];
+		}
+	}
+
+	static int slot(int key, int mask) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+}
@@ -0,0 +1,118 @@
+package battlecode.common;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from int keys to non-negative int values, such as
+ * the slot an entity with a given ID occupies. Works like IntHashMap but
+ * keeps the values in a primitive array; a missing key reads as -1.
+ */
+class IntIntMap {
+
+	private static final int EMPTY = -1;
+
+	private int[] keys;
+	private int[] values;
+	private int size;
+
+	IntIntMap() {
+		this(16);
+	}
+
+	IntIntMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+		keys = new int[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, EMPTY);
+	}
+
+	/**
+	 * Creates a copy of other.
+	 */
+	IntIntMap(IntIntMap other) {
+		keys = other.keys.clone();
+		values = other.values.clone();
+		size = other.size;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the value mapped to key, or -1 if there is none
+	 */
+	int get(int key) {
+		int mask = keys.length - 1;
+		for (int i = IntHashMap.slot(key, mask); values[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) return values[i];
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * @return the value previously mapped to key, or -1
+	 */
+	int put(int key, int value) {
+		if (value < 0) throw new IllegalArgumentException("IntIntMap values must be non-negative: " + value);
+		int mask = keys.length - 1;
+		int i = IntHashMap.slot(key, mask);
+		for (; values[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				int old = values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size * 2 > keys.length) rehash(keys.length * 2);
+		return EMPTY;
+	}
+
+	/**
+	 * @return the value that was mapped to key, or -1
+	 */
+	int remove(int key) {
+		int mask = keys.length - 1;
+		int i = IntHashMap.slot(key, mask);
+		for (; values[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) break;
+		}
+		int old = values[i];
+		if (old == EMPTY) return EMPTY;
+		size--;
+		for (int j = (i + 1) & mask; values[j] != EMPTY; j = (j + 1) & mask) {
+			int home = IntHashMap.slot(keys[j], mask);
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		values[i] = EMPTY;
+		return old;
+	}
+
+	void clear() {
+		Arrays.fill(values, EMPTY);
+		size = 0;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new int[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, EMPTY);
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldValues[j] == EMPTY) continue;
+			int i = IntHashMap.slot(oldKeys[j], mask);
+			while (values[i] != EMPTY) i = (i + 1) & mask;
+			keys[i] = oldKeys[j];
+			values[i] = oldValues[j];
+		}
+	}
+
+}
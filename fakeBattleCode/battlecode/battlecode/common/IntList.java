@@ -0,0 +1,57 @@
+package battlecode.common;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints, used as a reusable scratch buffer for
+ * slot queries so they do not box or allocate per result.
+ */
+class IntList {
+
+	private int[] data;
+	private int size;
+
+	IntList() {
+		this(16);
+	}
+
+	IntList(int capacity) {
+		data = new int[Math.max(1, capacity)];
+	}
+
+	int size() {
+		return size;
+	}
+
+	int get(int i) {
+		return data[i];
+	}
+
+	void set(int i, int value) {
+		data[i] = value;
+	}
+
+	void add(int value) {
+		if (size == data.length) data = Arrays.copyOf(data, size * 2);
+		data[size++] = value;
+	}
+
+	/**
+	 * Sorts the elements from index from onwards into ascending order.
+	 */
+	void sort(int from) {
+		Arrays.sort(data, from, size);
+	}
+
+	/**
+	 * Drops every element from index size onwards.
+	 */
+	void truncate(int newSize) {
+		size = newSize;
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+}
@@ -1,165 +1,451 @@
 package battlecode.common;
 
-import java.util.HashMap;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
 
 public class Map {
 	
+	private static final int SNAPSHOT_MAGIC = 0x4e534342; // "BCSN" in byte order
+	private static final short SNAPSHOT_VERSION = 1;
+	private static final int SNAPSHOT_HEADER_BYTES = 4 + 2 + 4 * 3 + 4 * 2 + 8 * 2 + 4 * 2 + 8 * 2 + 4 * 2;
+	
 	private final int height, width, rounds;
 	private final MapLocation origin;
 	private final MapLocation[] teamAArchons;
 	private final MapLocation[] teamBArchons;
-	final LinkedList<TreeInfo> trees;
-	final LinkedList<RobotInfo> robots;
-	final LinkedList<BulletInfo> bullets = new LinkedList<>();
-	final LinkedList<RobotInfo> broadcasters = new LinkedList<>();
-	final HashMap<RobotInfo, Integer> buildCooldown = new HashMap<>();
-	private int roundsPassed, teamAVictoryPoints, teamBVictoryPoints;
-	private double teamABullets, teamBBullets;
+	final EntityStore bodies;
+	final BulletPool bullets;
+	final BulletGrid bulletGrid;
+	final SpatialGrid treeGrid;
+	final SpatialGrid robotGrid;
+	final IDGenerator ids;
+	private int roundsPassed;
+	/** Bullet supply and victory points of each player team, by Team ordinal. */
+	private final double[] teamBullets = {300, 300};
+	private final int[] victoryPoints = new int[2];
+	private final IntList bulletCandidates = new IntList();
+	private ParallelBulletPhase parallelBullets;
+	private final long seed;
+	private final GameRandom random;
+	private ReplayWriter replay;
 	
 	public Map(int height, int width, int rounds, MapLocation origin, LinkedList<TreeInfo> trees, LinkedList<RobotInfo> robots) {
+		this(height, width, rounds, origin, trees, robots, GameConstants.GAME_DEFAULT_SEED);
+	}
+	
+	/**
+	 * @param seed the seed of the match's random number generator; the same
+	 * seed with the same players always plays out the same way
+	 */
+	public Map(int height, int width, int rounds, MapLocation origin, LinkedList<TreeInfo> trees, LinkedList<RobotInfo> robots, long seed) {
+		this(height, width, rounds, origin, seed, startingArchons(robots, true), startingArchons(robots, false));
+		for (TreeInfo t : trees) {
+			addTree(t);
+		}
+		for (RobotInfo r : robots) {
+			addRobot(r);
+		}
+	}
+	
+	/**
+	 * Creates a map with nothing on it.
+	 */
+	private Map(int height, int width, int rounds, MapLocation origin, long seed, MapLocation[] teamAArchons, MapLocation[] teamBArchons) {
+		this.seed = seed;
+		this.random = new GameRandom(seed);
 		this.height = height;
 		this.width = width;
 		this.rounds = rounds;
 		this.origin = origin;
-		this.trees = trees;
-		this.robots = robots;
 		this.roundsPassed = 0;
-		this.teamABullets = 300;
-		this.teamBBullets = 300;
-		this.teamAVictoryPoints = 0;
-		this.teamBVictoryPoints = 0;
-		int check = robots.size();
-		int indexA = 0;
-		int indexB = 0;
-		teamAArchons = new MapLocation[check / 2];
-		teamBArchons = new MapLocation[check / 2];
+		this.bodies = new EntityStore();
+		this.bullets = new BulletPool();
+		this.bulletGrid = new BulletGrid(bullets, origin, width, height);
+		this.treeGrid = new SpatialGrid(bodies, origin, width, height);
+		this.robotGrid = new SpatialGrid(bodies, origin, width, height);
+		this.ids = new IDGenerator(1);
+		this.teamAArchons = teamAArchons;
+		this.teamBArchons = teamBArchons;
+	}
+	
+	private Map(Map parent) {
+		this.seed = parent.seed;
+		this.random = new GameRandom(parent.random.getState());
+		this.height = parent.height;
+		this.width = parent.width;
+		this.rounds = parent.rounds;
+		this.origin = parent.origin;
+		this.roundsPassed = parent.roundsPassed;
+		this.bodies = parent.bodies.fork();
+		this.bullets = new BulletPool(parent.bullets);
+		this.bulletGrid = new BulletGrid(bullets, origin, width, height);
+		this.treeGrid = parent.treeGrid.fork(bodies);
+		this.robotGrid = parent.robotGrid.fork(bodies);
+		this.ids = new IDGenerator(parent.ids.peek());
+		this.teamAArchons = parent.teamAArchons;
+		this.teamBArchons = parent.teamBArchons;
+		this.teamBullets[0] = parent.teamBullets[0];
+		this.teamBullets[1] = parent.teamBullets[1];
+		this.victoryPoints[0] = parent.victoryPoints[0];
+		this.victoryPoints[1] = parent.victoryPoints[1];
+	}
+	
+	/**
+	 * Branches the world for lookahead. The fork starts in exactly this
+	 * map's state, random generator included, and from then on the two
+	 * evolve independently. Bodies and the spatial index are shared
+	 * copy-on-write, so a fork itself costs a copy of the grid's cell table
+	 * and of the bullets in flight. Bodies are copied a whole component group
+	 * at a time, however few of them change: the first robot a branch moves
+	 * copies every position, the first hit copies every health. A branch
+	 * therefore pays for the groups it touches times the number of bodies on
+	 * the map, plus the grid cells it writes to. Replay recording and the
+	 * bullet phase pool are not carried over.
+	 * <p>
+	 * Must not be called while another thread is using this map; the fork
+	 * and this map may then be used on different threads.
+	 *
+	 * @return the new branch
+	 */
+	public Map fork() {
+		return new Map(this);
+	}
+	
+	/**
+	 * @param teamA whether to collect the archons of team A or of any other team
+	 */
+	private static MapLocation[] startingArchons(LinkedList<RobotInfo> robots, boolean teamA) {
+		MapLocation[] archons = new MapLocation[robots.size() / 2];
+		int index = 0;
 		for (RobotInfo r : robots) {
-			if (r.type.equals(RobotType.ARCHON)) {
-				if (r.team.equals(Team.A)) teamAArchons[indexA++] = new MapLocation(r.getLocation().x, r.getLocation().y);
-				else teamBArchons[indexB++] = new MapLocation(r.getLocation().x, r.getLocation().y);
+			if (r.type.equals(RobotType.ARCHON) && r.team.equals(Team.A) == teamA) {
+				archons[index++] = new MapLocation(r.getLocation().x, r.getLocation().y);
 			}
 		}
+		return archons;
 	}
 	
-	public void createBullet(MapLocation loc, Direction dir, float speed, float damage, RobotInfo maker) {
-		int id = (int)(Math.random() * 32000 + 1);
-		boolean taken = false;
-		for (BulletInfo b : bullets) {
-			if (b.ID == id) taken = true;
+	/**
+	 * Serializes the complete state of the world: bodies with every
+	 * component and their slots, bullets, spatial index order, team
+	 * economies, the round count, the ID counter and the random generator.
+	 * A map restored from the result plays on exactly as this one would.
+	 * Players, a replay writer and a bullet phase pool are not part of the
+	 * world and are not saved.
+	 *
+	 * @return the snapshot, readable by restore
+	 */
+	public byte[] snapshot() {
+		int bytes = SNAPSHOT_HEADER_BYTES + archonBytes(teamAArchons) + archonBytes(teamBArchons)
+				+ bodies.snapshotBytes() + bullets.snapshotBytes() + treeGrid.snapshotBytes() + robotGrid.snapshotBytes();
+		ByteBuffer out = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		out.putInt(SNAPSHOT_MAGIC).putShort(SNAPSHOT_VERSION);
+		out.putInt(height).putInt(width).putInt(rounds).putFloat(origin.x).putFloat(origin.y);
+		out.putLong(seed).putLong(random.getState()).putInt(roundsPassed).putInt(ids.peek());
+		out.putDouble(teamBullets[0]).putDouble(teamBullets[1]).putInt(victoryPoints[0]).putInt(victoryPoints[1]);
+		writeArchons(out, teamAArchons);
+		writeArchons(out, teamBArchons);
+		bodies.write(out);
+		bullets.write(out);
+		treeGrid.write(out);
+		robotGrid.write(out);
+		return out.array();
+	}
+	
+	/**
+	 * Rebuilds a map from a snapshot.
+	 *
+	 * @param snapshot bytes returned by snapshot
+	 * @return a new map in the state the snapshot was taken in
+	 * @throws IllegalArgumentException if the bytes are not a snapshot
+	 */
+	public static Map restore(byte[] snapshot) {
+		ByteBuffer in = ByteBuffer.wrap(snapshot).order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			if (in.getInt() != SNAPSHOT_MAGIC) throw new IllegalArgumentException("not a map snapshot");
+			short version = in.getShort();
+			if (version != SNAPSHOT_VERSION) throw new IllegalArgumentException("unsupported snapshot version " + version);
+			int height = in.getInt(), width = in.getInt(), rounds = in.getInt();
+			MapLocation origin = new MapLocation(in.getFloat(), in.getFloat());
+			long seed = in.getLong(), state = in.getLong();
+			int roundsPassed = in.getInt(), nextID = in.getInt();
+			double bulletsA = in.getDouble(), bulletsB = in.getDouble();
+			int vpA = in.getInt(), vpB = in.getInt();
+			Map map = new Map(height, width, rounds, origin, seed, readArchons(in), readArchons(in));
+			map.random.setState(state);
+			map.roundsPassed = roundsPassed;
+			map.ids.reserve(nextID - 1);
+			map.teamBullets[0] = bulletsA;
+			map.teamBullets[1] = bulletsB;
+			map.victoryPoints[0] = vpA;
+			map.victoryPoints[1] = vpB;
+			map.bodies.read(in);
+			map.bullets.read(in);
+			map.treeGrid.read(in);
+			map.robotGrid.read(in);
+			return map;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("map snapshot is truncated", e);
 		}
-		while (taken) {
-			id = (int)(Math.random() * 32000 + 1);
-			taken = false;
-			for (BulletInfo b : bullets) {
-				if (b.ID == id) taken = true;
-			}
+	}
+	
+	private static int archonBytes(MapLocation[] archons) {
+		return 4 + archons.length * (1 + 4 * 2);
+	}
+	
+	private static void writeArchons(ByteBuffer out, MapLocation[] archons) {
+		out.putInt(archons.length);
+		for (MapLocation a : archons) {
+			out.put((byte)(a == null ? 0 : 1));
+			out.putFloat(a == null ? 0 : a.x).putFloat(a == null ? 0 : a.y);
 		}
-		bullets.add(new BulletInfo(id, loc, dir, speed, damage));
-		moveBullet(bullets.getLast(), maker);
+	}
+	
+	private static MapLocation[] readArchons(ByteBuffer in) {
+		MapLocation[] archons = new MapLocation[in.getInt()];
+		for (int i = 0; i < archons.length; i++) {
+			boolean present = in.get() != 0;
+			float x = in.getFloat(), y = in.getFloat();
+			if (present) archons[i] = new MapLocation(x, y);
+		}
+		return archons;
+	}
+	
+	public void createBullet(MapLocation loc, Direction dir, float speed, float damage, RobotInfo maker) {
+		createBullet(loc.x, loc.y, dir, speed, damage, maker == null ? -1 : bodies.slotOf(maker.ID));
+	}
+	
+	/**
+	 * Fires a bullet from (x, y) and moves it for the current round. The
+	 * body in slot maker, if not -1, cannot be hit by it this round.
+	 */
+	void createBullet(float x, float y, Direction dir, float speed, float damage, int maker) {
+		int i = bullets.add(ids.nextID(), x, y, dir, speed, damage);
+		if (replay != null) replay.fire(bullets, i);
+		moveBullet(i, maker);
+	}
+	
+	/**
+	 * @return a snapshot of the robot with the given ID, or null
+	 */
+	RobotInfo getRobot(int id) {
+		int s = bodies.robotSlot(id);
+		return s < 0 ? null : bodies.robotInfo(s);
+	}
+	
+	/**
+	 * @return a snapshot of the tree with the given ID, or null
+	 */
+	TreeInfo getTree(int id) {
+		int s = bodies.treeSlot(id);
+		return s < 0 ? null : bodies.treeInfo(s);
+	}
+	
+	int addRobot(RobotInfo r) {
+		ids.reserve(r.ID);
+		int s = bodies.addRobot(r);
+		robotGrid.insert(s);
+		if (replay != null) replay.spawn(bodies, s);
+		return s;
+	}
+	
+	int addTree(TreeInfo t) {
+		ids.reserve(t.ID);
+		int s = bodies.addTree(t);
+		treeGrid.insert(s);
+		if (replay != null) replay.spawn(bodies, s);
+		return s;
+	}
+	
+	void removeBody(int s) {
+		(bodies.kind[s] == EntityStore.ROBOT ? robotGrid : treeGrid).remove(s);
+		if (replay != null) replay.death(bodies.id[s]);
+		bodies.remove(s);
+	}
+	
+	/**
+	 * Moves the robot in slot s to (x, y), keeping its slot.
+	 */
+	void moveRobot(int s, float x, float y) {
+		robotGrid.remove(s);
+		bodies.move(s, x, y);
+		robotGrid.insert(s);
+		if (replay != null) replay.move(bodies.id[s], x, y);
+	}
+	
+	/**
+	 * Gives health to the body in slot s, up to its maximum.
+	 */
+	void heal(int s, float amount) {
+		float health = Math.min(bodies.health[s] + amount, bodies.maxHealth(s));
+		if (health == bodies.health[s]) return;
+		bodies.setHealth(s, health);
+		if (replay != null) replay.damage(bodies.id[s], health);
+	}
+	
+	/**
+	 * Takes health from the body in slot s, removing it once none is left.
+	 */
+	void damage(int s, float amount) {
+		float health = bodies.health[s] - amount;
+		if (health > 0) {
+			bodies.setHealth(s, health);
+			if (replay != null) replay.damage(bodies.id[s], health);
+		} else removeBody(s);
+	}
+	
+	/**
+	 * Empties the tree in slot s of its bullets.
+	 *
+	 * @return the bullets it held
+	 */
+	int shake(int s) {
+		int taken = bodies.takeContainedBullets(s);
+		if (taken != 0 && replay != null) replay.shake(bodies.id[s]);
+		return taken;
+	}
+	
+	/**
+	 * Runs the bullet phase of each round on the given pool, or on the
+	 * calling thread when it is null. Either way the outcome of every round
+	 * is the same.
+	 */
+	public void setBulletPhasePool(ForkJoinPool pool) {
+		parallelBullets = pool == null ? null : new ParallelBulletPhase(this, pool);
+	}
+	
+	/**
+	 * Starts recording the match to the given writer, beginning with the
+	 * current state of the map. The caller closes the writer once the match
+	 * is over.
+	 */
+	public void setReplay(ReplayWriter writer) {
+		writer.begin(this, seed);
+		replay = writer;
 	}
 	
 	public void changeBullets(Team t, float b) {
-		if (t.equals(Team.A)) teamABullets += b;
-		else teamBBullets += b;
+		teamBullets[t == Team.A ? 0 : 1] += b;
 	}
 	
+	/**
+	 * Ends the round by running each whole-world system once.
+	 */
 	public void addRound() {
 		roundsPassed++;
-		double teamAB = 2 - teamABullets / 100;
-		double teamBB = 2 - teamBBullets / 100;
-		for (TreeInfo t : trees) {
-			if (t.team.equals(Team.A)) teamAB++;
-			else if (t.team.equals(Team.B)) teamBB++;
-		}
-		teamABullets += teamAB;
-		teamBBullets += teamBB;
-		for (BulletInfo b : bullets) {
-			moveBullet(b);
+		WorldSystems.income(bodies, teamBullets);
+		bulletGrid.invalidate();
+		if (parallelBullets != null) parallelBullets.step(origin.x, origin.y, origin.x + width, origin.y + height);
+		else if (BulletIntegrator.BATCHED) stepBulletsBatched();
+		else stepBulletsScalar();
+		WorldSystems.cooldowns(bodies);
+		WorldSystems.clearBroadcasts(bodies);
+		if (replay != null) replay.round(this);
+	}
+	
+	/**
+	 * Moves every bullet, integrating all of them first in one batch and then
+	 * resolving hits bullet by bullet.
+	 */
+	void stepBulletsBatched() {
+		BulletIntegrator.step(bullets, origin.x, origin.y, origin.x + width, origin.y + height);
+		// walk backwards so a bullet swapped into a freed slot has already moved
+		for (int i = bullets.size() - 1; i >= 0; i--) {
+			resolveBullet(i, -1, bullets.nextX[i], bullets.nextY[i], bullets.leaving[i]);
 		}
-		broadcasters.clear();
-		for (RobotInfo r : buildCooldown.keySet()) {
-			buildCooldown.put(r, buildCooldown.get(r) - 1);
+	}
+	
+	/**
+	 * Moves every bullet, one at a time.
+	 */
+	void stepBulletsScalar() {
+		for (int i = bullets.size() - 1; i >= 0; i--) {
+			moveBullet(i, -1);
 		}
 	}
 	
-	public void moveBullet(BulletInfo b) {
-		moveBullet(b, null);
+	void moveBullet(int i, int ignore) {
+		float x1 = bullets.x[i] + bullets.dx[i];
+		float y1 = bullets.y[i] + bullets.dy[i];
+		boolean leaving = x1 < origin.x || x1 >= origin.x + width || y1 < origin.y || y1 >= origin.y + height;
+		resolveBullet(i, ignore, x1, y1, leaving);
 	}
 	
-	public void moveBullet(BulletInfo b, RobotInfo ignore) {
-		float deltax = b.dir.getDeltaX(b.speed);
-		float deltay = b.dir.getDeltaY(b.speed);
-		float M = deltay / deltax;
-		float min = deltax;
-		BodyInfo body = null;
-		for (RobotInfo r : robots) {
-			if (!r.equals(ignore)) {
-				float R = r.type.bodyRadius;
-				float B = b.location.x - r.location.x;
-				if ((Math.pow(M, 2) + 1) * Math.pow(R, 2) >= Math.pow(B, 2)) {
-					double disc = Math.sqrt(4 * ((Math.pow(M, 2) + 1) * Math.pow(R, 2) - Math.pow(B, 2)));
-					disc = disc / (-2 * (Math.pow(M, 2) + 1));
-					double x1 = (B * M) / ((Math.pow(M, 2) + 1)) + disc;
-					double x2 = (B * M) / ((Math.pow(M, 2) + 1)) - disc;
-					double minx = x1;
-					if (Math.abs(x2 - b.location.x) < Math.abs(x1 - b.location.x)) minx = x2;
-					if (minx <= min) {
-						min = (float)minx;
-						body = r;
-					}
-				}
+	/**
+	 * Finishes the move of bullet i to (x1, y1): damages the first body on
+	 * its path other than the one in slot ignore, drops it if it left the
+	 * map, or otherwise puts it at its new position. Of two bodies hit at
+	 * the same moment the one in the lower slot is hit.
+	 */
+	private void resolveBullet(int i, int ignore, float x1, float y1, boolean leaving) {
+		float x0 = bullets.x[i];
+		float y0 = bullets.y[i];
+		float deltax = bullets.dx[i];
+		float deltay = bullets.dy[i];
+		// broad phase: only bodies bucketed in cells along the bullet's path
+		bulletCandidates.clear();
+		robotGrid.querySegment(x0, y0, x1, y1, bulletCandidates);
+		treeGrid.querySegment(x0, y0, x1, y1, bulletCandidates);
+		float min = Float.POSITIVE_INFINITY;
+		int body = -1;
+		for (int j = 0, n = bulletCandidates.size(); j < n; j++) {
+			int c = bulletCandidates.get(j);
+			if (c == ignore) continue;
+			float t = hitTime(x0, y0, deltax, deltay, bodies.x[c], bodies.y[c], bodies.radius[c]);
+			if (t < min || (t == min && c < body)) {
+				min = t;
+				body = c;
 			}
 		}
-		for (TreeInfo t : trees) {
-			float R = t.radius;
-			float B = b.location.x - t.location.x;
-			if ((Math.pow(M, 2) + 1) * Math.pow(R, 2) >= Math.pow(B, 2)) {
-				double disc = Math.sqrt(4 * ((Math.pow(M, 2) + 1) * Math.pow(R, 2) - Math.pow(B, 2)));
-				disc = disc / (-2 * (Math.pow(M, 2) + 1));
-				double x1 = (B * M) / ((Math.pow(M, 2) + 1)) + disc;
-				double x2 = (B * M) / ((Math.pow(M, 2) + 1)) - disc;
-				double minx = x1;
-				if (Math.abs(x2 - b.location.x) < Math.abs(x1 - b.location.x)) minx = x2;
-				if (minx <= min) {
-					min = (float)minx;
-					body = t;
-				}
-			}
-		}
-		bullets.remove(b);
-		if (body != null) {
-			if (body.isRobot()) {
-				RobotInfo newri = (RobotInfo)body;
-				robots.remove(newri);
-				if (newri.health - b.damage > 0) {
-					robots.add(new RobotInfo(newri.ID, newri.team, newri.type, newri.location, newri.health - b.damage, newri.attackCount, newri.moveCount));
-				}
-			} else {
-				TreeInfo newti = (TreeInfo)body;
-				trees.remove(newti);
-				if (newti.health - b.damage > 0) {
-					trees.add(new TreeInfo(newti.ID, newti.team, newti.location, newti.radius, newti.health - b.damage, newti.containedBullets, newti.containedRobot));
-				}
-			}
+		finishBullet(i, body, x1, y1, leaving);
+	}
+	
+	/**
+	 * Applies the outcome of bullet i's move: it damages the body in slot
+	 * body if that is not -1, otherwise it leaves the map or moves to (x1, y1).
+	 */
+	void finishBullet(int i, int body, float x1, float y1, boolean leaving) {
+		if (body >= 0 || leaving) {
+			if (replay != null) replay.bulletEnd(bullets.id[i]);
+			if (body >= 0) damage(body, bullets.damage[i]);
+			bullets.remove(i);
 		} else {
-			bullets.add(new BulletInfo(b.ID, new MapLocation(b.location.x + deltax, b.location.y + deltay), b.dir, b.speed, b.damage));
+			bullets.x[i] = x1;
+			bullets.y[i] = y1;
 		}
 	}
 	
+	/**
+	 * Returns the fraction of the segment from (x, y) along (dx, dy) at which it
+	 * first touches the circle at (cx, cy), or infinity if it misses.
+	 */
+	static float hitTime(float x, float y, float dx, float dy, float cx, float cy, float radius) {
+		float fx = x - cx;
+		float fy = y - cy;
+		float c = fx * fx + fy * fy - radius * radius;
+		if (c <= 0) return 0;
+		float a = dx * dx + dy * dy;
+		float b = 2 * (fx * dx + fy * dy);
+		float disc = b * b - 4 * a * c;
+		if (a == 0 || disc < 0) return Float.POSITIVE_INFINITY;
+		float t = (float)((-b - Math.sqrt(disc)) / (2 * a));
+		if (t < 0 || t > 1) return Float.POSITIVE_INFINITY;
+		return t;
+	}
+	
 	public void donate(Team t, double d) {
-		if (t.equals(Team.A)) teamAVictoryPoints += Math.floor(d / 10);
-		else teamBVictoryPoints += Math.floor(d / 10);
+		victoryPoints[t == Team.A ? 0 : 1] += Math.floor(d / 10);
 	}
 	
 	public int getVictoryPoints(Team t) {
-		if (t.equals(Team.A)) return teamAVictoryPoints;
-		else return teamBVictoryPoints;
+		return victoryPoints[t == Team.A ? 0 : 1];
 	}
 	
 	public double getBullets(Team t) {
-		if (t.equals(Team.A)) return teamABullets;
-		else return teamBBullets;
+		return teamBullets[t == Team.A ? 0 : 1];
 	}
 	
 	public MapLocation[] getStartingArchons(Team t) {
@@ -187,4 +473,11 @@ public class Map {
 		return roundsPassed;
 	}
 	
+	/**
+	 * @return the generator every random decision of this match is drawn from
+	 */
+	public GameRandom getRandom() {
+		return random;
+	}
+	
 }
@@ -0,0 +1,47 @@
+package battlecode.common;
+
+import java.util.function.Supplier;
+
+/**
+ * Everything needed to play one game: a source of fresh maps and the player
+ * code of both teams. A Match can be played any number of times; each play
+ * gets its own Map since the engine mutates it.
+ */
+public class Match {
+
+	private final Supplier<Map> map;
+	private final PlayerFactory teamA, teamB;
+	private final Supplier<BatchPolicy> policyA, policyB;
+
+	public Match(Supplier<Map> map, PlayerFactory teamA, PlayerFactory teamB) {
+		this.map = map;
+		this.teamA = teamA;
+		this.teamB = teamB;
+		this.policyA = null;
+		this.policyB = null;
+	}
+
+	/**
+	 * Creates a match between two batched network policies. Each play gets
+	 * policies of its own from the suppliers, since a network cannot be
+	 * evaluated by two matches at once.
+	 */
+	public Match(Supplier<Map> map, Supplier<BatchPolicy> teamA, Supplier<BatchPolicy> teamB) {
+		this.map = map;
+		this.teamA = null;
+		this.teamB = null;
+		this.policyA = teamA;
+		this.policyB = teamB;
+	}
+
+	/**
+	 * Plays the match to the end on the calling thread.
+	 *
+	 * @return the result of the match
+	 */
+	public GameResult play() {
+		if (policyA != null) return new GameEngine(map.get(), policyA.get(), policyB.get()).run();
+		return new GameEngine(map.get(), teamA, teamB).run();
+	}
+
+}
@@ -0,0 +1,71 @@
+package battlecode.common;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Plays many independent matches at once on a work-stealing pool, one match
+ * per task. Matches share no mutable state, so throughput scales with the
+ * number of workers.
+ */
+public class MatchFarm implements AutoCloseable {
+
+	/**
+	 * Receives results as matches finish. Called on the worker thread that
+	 * played the match, so implementations must be thread safe and should not
+	 * block.
+	 */
+	public interface ResultListener {
+		void matchFinished(int index, GameResult result);
+	}
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates a farm with one worker per available processor.
+	 */
+	public MatchFarm() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public MatchFarm(int workers) {
+		this.pool = new ForkJoinPool(workers, MatchWorker.FACTORY, null, false);
+	}
+
+	public int getWorkers() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Schedules a match.
+	 *
+	 * @param match the match to play
+	 * @return a future completed with the result when the match ends
+	 */
+	public CompletableFuture<GameResult> submit(Match match) {
+		return CompletableFuture.supplyAsync(match::play, pool);
+	}
+
+	/**
+	 * Plays all of the given matches, handing each result to the listener as
+	 * soon as it is available, and returns once every match has finished.
+	 *
+	 * @param matches the matches to play
+	 * @param listener receives the index of each match and its result
+	 */
+	public void playAll(List<Match> matches, ResultListener listener) {
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[matches.size()];
+		for (int i = 0; i < futures.length; i++) {
+			final int index = i;
+			futures[i] = submit(matches.get(i)).thenAccept(result -> listener.matchFinished(index, result));
+		}
+		CompletableFuture.allOf(futures).join();
+	}
+
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+}
@@ -0,0 +1,23 @@
+package battlecode.common;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Worker thread of a MatchFarm. It carries the bytecode budget of the robot
+ * whose turn it is running, so RobotMonitor can find the budget with a field
+ * read instead of a ThreadLocal lookup. Only the worker itself reads or
+ * writes the field.
+ */
+final class MatchWorker extends ForkJoinWorkerThread {
+
+	static final ForkJoinPool.ForkJoinWorkerThreadFactory FACTORY = MatchWorker::new;
+
+	/** The budget RobotMonitor charges on this thread, or null between turns. */
+	BytecodeBudget running;
+
+	private MatchWorker(ForkJoinPool pool) {
+		super(pool);
+	}
+
+}
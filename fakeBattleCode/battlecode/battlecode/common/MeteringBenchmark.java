@@ -0,0 +1,98 @@
+package battlecode.common;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.LinkedList;
+
+/**
+ * Measures how much faster matches run with bytecode accounting switched
+ * off. BytecodeBudget.METERED is fixed when the JVM starts, so each mode is
+ * timed in its own child JVM on the same classpath.
+ * <p>
+ * Usage: {@code java battlecode.common.MeteringBenchmark [matches]}
+ */
+public class MeteringBenchmark {
+
+	private static final String CHILD = "--child";
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length > 0 && args[0].equals(CHILD)) {
+			System.out.println(time(Integer.parseInt(args[1])));
+			return;
+		}
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		double metered = runChild(false, matches);
+		double unmetered = runChild(true, matches);
+		System.out.printf("metered:   %.3f ms/match%n", metered);
+		System.out.printf("unmetered: %.3f ms/match%n", unmetered);
+		System.out.printf("speedup:   %.2fx%n", metered / unmetered);
+	}
+
+	private static double runChild(boolean unmetered, int matches) throws IOException, InterruptedException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process p = new ProcessBuilder(java, "-Dbc.unmetered=" + unmetered, "-cp", System.getProperty("java.class.path"),
+				MeteringBenchmark.class.getName(), CHILD, Integer.toString(matches)).redirectErrorStream(true).start();
+		String last = null;
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+			for (String line; (line = in.readLine()) != null;) last = line;
+		}
+		if (p.waitFor() != 0 || last == null) throw new IllegalStateException("benchmark run failed: " + last);
+		return Double.parseDouble(last);
+	}
+
+	/**
+	 * Plays the given number of matches after a warm-up of the same size.
+	 *
+	 * @return milliseconds per match
+	 */
+	private static double time(int matches) {
+		Match match = new Match(MeteringBenchmark::map, MeteringBenchmark::player, MeteringBenchmark::player);
+		for (int i = 0; i < matches; i++) match.play();
+		long start = System.nanoTime();
+		for (int i = 0; i < matches; i++) match.play();
+		return (System.nanoTime() - start) / 1e6 / matches;
+	}
+
+	/**
+	 * A player that senses, shoots and moves every turn, plus a loop standing
+	 * in for its own logic that is charged the way BytecodeCounter charges
+	 * instrumented code: one RobotMonitor call per basic block.
+	 */
+	private static Player player(RobotInfo robot) {
+		return rc -> {
+			float score = 0;
+			for (int i = 0; i < 500; i++) {
+				RobotMonitor.useBytecodes(6);
+				score += (i ^ robot.ID) * 0.5f;
+			}
+			if (score < 0) rc.disintegrate();
+			RobotInfo[] enemies = rc.senseNearbyRobots(-1, rc.getTeam().opponent());
+			rc.senseNearbyTrees();
+			rc.senseNearbyBullets();
+			if (enemies.length > 0 && rc.canFireSingleShot()) {
+				rc.fireSingleShot(rc.getLocation().directionTo(enemies[0].location));
+			}
+			Direction dir = new Direction((float)(robot.ID * 0.7 + rc.getRoundNum() * 0.05));
+			if (rc.canMove(dir)) rc.move(dir);
+		};
+	}
+
+	private static Map map() {
+		LinkedList<RobotInfo> robots = new LinkedList<>();
+		LinkedList<TreeInfo> trees = new LinkedList<>();
+		int id = 1;
+		robots.add(new RobotInfo(id++, Team.A, RobotType.ARCHON, new MapLocation(10, 50), RobotType.ARCHON.maxHealth, 0, 0));
+		robots.add(new RobotInfo(id++, Team.B, RobotType.ARCHON, new MapLocation(90, 50), RobotType.ARCHON.maxHealth, 0, 0));
+		for (int i = 0; i < 8; i++) {
+			robots.add(new RobotInfo(id++, Team.A, RobotType.SOLDIER, new MapLocation(30, 15 + i * 10), RobotType.SOLDIER.maxHealth, 0, 0));
+			robots.add(new RobotInfo(id++, Team.B, RobotType.SOLDIER, new MapLocation(70, 15 + i * 10), RobotType.SOLDIER.maxHealth, 0, 0));
+		}
+		for (int i = 0; i < 10; i++) {
+			trees.add(new TreeInfo(id++, Team.NEUTRAL, new MapLocation(50, 5 + i * 10), 2, 50, 0, null));
+		}
+		return new Map(100, 100, 300, new MapLocation(0, 0), trees, robots);
+	}
+
+}
@@ -0,0 +1,44 @@
+package battlecode.common;
+
+/**
+ * A BatchPolicy that feeds the network each robot's Observation and plays
+ * its outputs as an Action, so the network alone decides what robots do.
+ * Failed parts of an action are simply not applied.
+ */
+public class NetworkPolicy implements BatchPolicy {
+
+	private final Observation layout;
+	private final NeuralNetwork network;
+
+	/**
+	 * @param layout the observation the network reads
+	 * @param network a network with layout.size() inputs and Action.SIZE
+	 * outputs
+	 */
+	public NetworkPolicy(Observation layout, NeuralNetwork network) {
+		if (network.getInputSize() != layout.size()) throw new IllegalArgumentException("network has " + network.getInputSize() + " inputs but the observation has " + layout.size() + " features");
+		if (network.getOutputSize() != Action.SIZE) throw new IllegalArgumentException("network has " + network.getOutputSize() + " outputs but an action has " + Action.SIZE);
+		this.layout = layout;
+		this.network = network;
+	}
+
+	public Observation getLayout() {
+		return layout;
+	}
+
+	@Override
+	public NeuralNetwork getNetwork() {
+		return network;
+	}
+
+	@Override
+	public void observe(RobotController rc, float[] features, int offset) {
+		rc.observe(layout, features, offset);
+	}
+
+	@Override
+	public void act(RobotController rc, float[] outputs, int offset) {
+		rc.act(outputs, offset);
+	}
+
+}
@@ -0,0 +1,243 @@
+package battlecode.common;
+
+import java.util.Arrays;
+
+/**
+ * A fully connected feed-forward network with float weights. Layer l maps
+ * getLayerSize(l) inputs to getLayerSize(l + 1) outputs; hidden layers use
+ * the hidden activation and the last layer the output activation.
+ * <p>
+ * All parameters live in one flat array, layer by layer, each layer's
+ * weights followed by its biases. Weights are stored input-major, so the
+ * weights from input i of a layer are a contiguous row over its outputs.
+ * forward(float[], int, float[]) runs a whole batch of inputs through the
+ * network at once as one matrix multiply per layer, which is much faster
+ * than one pass per input.
+ * <p>
+ * Not thread safe: a network keeps the activations of its last batch.
+ */
+public class NeuralNetwork {
+
+	public enum Activation {
+		LINEAR, RELU, TANH
+	}
+
+	/** Batch rows multiplied together against each row of weights. */
+	private static final int TILE = 4;
+
+	private final int[] sizes;
+	private final int[] offsets;
+	private final float[] parameters;
+	private final Activation hidden, output;
+	private float[] bufferA = new float[0], bufferB = new float[0];
+
+	/**
+	 * Creates a network with all parameters 0.
+	 *
+	 * @param sizes the number of inputs, the size of each hidden layer and
+	 * the number of outputs
+	 */
+	public NeuralNetwork(Activation hidden, Activation output, int... sizes) {
+		if (sizes.length < 2) throw new IllegalArgumentException("a network needs at least an input and an output layer");
+		this.hidden = hidden;
+		this.output = output;
+		this.sizes = sizes.clone();
+		this.offsets = new int[sizes.length];
+		int count = 0;
+		for (int l = 0; l + 1 < sizes.length; l++) {
+			if (sizes[l] <= 0 || sizes[l + 1] <= 0) throw new IllegalArgumentException("layer sizes must be positive");
+			offsets[l] = count;
+			count += (sizes[l] + 1) * sizes[l + 1];
+		}
+		offsets[sizes.length - 1] = count;
+		this.parameters = new float[count];
+	}
+
+	/**
+	 * @return a network with the same shape and parameters, with its own
+	 * buffers
+	 */
+	public NeuralNetwork copy() {
+		NeuralNetwork n = new NeuralNetwork(hidden, output, sizes);
+		System.arraycopy(parameters, 0, n.parameters, 0, parameters.length);
+		return n;
+	}
+
+	public int getInputSize() {
+		return sizes[0];
+	}
+
+	public int getOutputSize() {
+		return sizes[sizes.length - 1];
+	}
+
+	public int getLayerCount() {
+		return sizes.length;
+	}
+
+	public int getLayerSize(int l) {
+		return sizes[l];
+	}
+
+	public int getParameterCount() {
+		return parameters.length;
+	}
+
+	/**
+	 * Copies every parameter into dest, starting at offset.
+	 */
+	public void getParameters(float[] dest, int offset) {
+		System.arraycopy(parameters, 0, dest, offset, parameters.length);
+	}
+
+	/**
+	 * Replaces every parameter with those in src, starting at offset.
+	 */
+	public void setParameters(float[] src, int offset) {
+		System.arraycopy(src, offset, parameters, 0, parameters.length);
+	}
+
+	/**
+	 * Runs a batch through the network.
+	 *
+	 * @param in batch rows of getInputSize() inputs each, back to back
+	 * @param batch the number of rows
+	 * @param out receives batch rows of getOutputSize() outputs each
+	 */
+	public void forward(float[] in, int batch, float[] out) {
+		if (batch == 0) return;
+		int widest = 0;
+		for (int size : sizes) widest = Math.max(widest, size);
+		if (bufferA.length < batch * widest) {
+			bufferA = new float[batch * widest];
+			bufferB = new float[batch * widest];
+		}
+		float[] src = in;
+		for (int l = 0; l + 1 < sizes.length; l++) {
+			boolean last = l + 2 == sizes.length;
+			float[] dst = last ? out : (src == bufferA ? bufferB : bufferA);
+			layer(l, src, batch, dst);
+			activate(last ? output : hidden, dst, batch * sizes[l + 1]);
+			src = dst;
+		}
+	}
+
+	/**
+	 * Runs a single input through the network.
+	 */
+	public void forward(float[] in, float[] out) {
+		forward(in, 1, out);
+	}
+
+	/**
+	 * dst = src * W + b for layer l, for every row of the batch. Outputs are
+	 * computed in blocks of TILE rows by TILE outputs held in local
+	 * accumulators, so each weight and input loaded is used TILE times.
+	 * Every output sums its products in input order starting from 0 and adds
+	 * the bias last, whichever block computes it, so a row gets the same
+	 * result alone as in any batch.
+	 */
+	private void layer(int l, float[] src, int batch, float[] dst) {
+		int ins = sizes[l], outs = sizes[l + 1];
+		int w = offsets[l];
+		int bias = w + ins * outs;
+		int r = 0;
+		for (; r + TILE <= batch; r += TILE) {
+			int o = 0;
+			for (; o + TILE <= outs; o += TILE) {
+				block(src, r * ins, ins, w + o, outs, dst, r * outs + o, bias + o);
+			}
+			for (; o < outs; o++) {
+				for (int k = r; k < r + TILE; k++) {
+					dst[k * outs + o] = parameters[bias + o] + dot(src, k * ins, ins, w + o, outs);
+				}
+			}
+		}
+		for (; r < batch; r++) {
+			int o = 0;
+			for (; o + TILE <= outs; o += TILE) {
+				row(src, r * ins, ins, w + o, outs, dst, r * outs + o, bias + o);
+			}
+			for (; o < outs; o++) {
+				dst[r * outs + o] = parameters[bias + o] + dot(src, r * ins, ins, w + o, outs);
+			}
+		}
+	}
+
+	/**
+	 * Computes TILE x TILE outputs: rows starting at input offset s (each
+	 * ins long), outputs starting at weight column k.
+	 */
+	private void block(float[] src, int s, int ins, int k, int outs, float[] dst, int d, int bias) {
+		float[] p = parameters;
+		int s1 = s + ins, s2 = s1 + ins, s3 = s2 + ins;
+		float c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+		float c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+		float c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+		float c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+		for (int i = 0; i < ins; i++, k += outs) {
+			float w0 = p[k], w1 = p[k + 1], w2 = p[k + 2], w3 = p[k + 3];
+			float a0 = src[s + i], a1 = src[s1 + i], a2 = src[s2 + i], a3 = src[s3 + i];
+			c00 += a0 * w0; c01 += a0 * w1; c02 += a0 * w2; c03 += a0 * w3;
+			c10 += a1 * w0; c11 += a1 * w1; c12 += a1 * w2; c13 += a1 * w3;
+			c20 += a2 * w0; c21 += a2 * w1; c22 += a2 * w2; c23 += a2 * w3;
+			c30 += a3 * w0; c31 += a3 * w1; c32 += a3 * w2; c33 += a3 * w3;
+		}
+		float b0 = p[bias], b1 = p[bias + 1], b2 = p[bias + 2], b3 = p[bias + 3];
+		int d1 = d + outs, d2 = d1 + outs, d3 = d2 + outs;
+		dst[d] = b0 + c00; dst[d + 1] = b1 + c01; dst[d + 2] = b2 + c02; dst[d + 3] = b3 + c03;
+		dst[d1] = b0 + c10; dst[d1 + 1] = b1 + c11; dst[d1 + 2] = b2 + c12; dst[d1 + 3] = b3 + c13;
+		dst[d2] = b0 + c20; dst[d2 + 1] = b1 + c21; dst[d2 + 2] = b2 + c22; dst[d2 + 3] = b3 + c23;
+		dst[d3] = b0 + c30; dst[d3 + 1] = b1 + c31; dst[d3 + 2] = b2 + c32; dst[d3 + 3] = b3 + c33;
+	}
+
+	/**
+	 * Computes TILE outputs of a single row.
+	 */
+	private void row(float[] src, int s, int ins, int k, int outs, float[] dst, int d, int bias) {
+		float[] p = parameters;
+		float c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+		for (int i = 0; i < ins; i++, k += outs) {
+			float a = src[s + i];
+			c0 += a * p[k];
+			c1 += a * p[k + 1];
+			c2 += a * p[k + 2];
+			c3 += a * p[k + 3];
+		}
+		dst[d] = p[bias] + c0;
+		dst[d + 1] = p[bias + 1] + c1;
+		dst[d + 2] = p[bias + 2] + c2;
+		dst[d + 3] = p[bias + 3] + c3;
+	}
+
+	private float dot(float[] src, int s, int ins, int k, int outs) {
+		float c = 0;
+		for (int i = 0; i < ins; i++, k += outs) {
+			c += src[s + i] * parameters[k];
+		}
+		return c;
+	}
+
+	private static void activate(Activation f, float[] v, int n) {
+		switch (f) {
+		case RELU:
+			for (int i = 0; i < n; i++) {
+				if (v[i] < 0) v[i] = 0;
+			}
+			break;
+		case TANH:
+			for (int i = 0; i < n; i++) {
+				v[i] = (float)Math.tanh(v[i]);
+			}
+			break;
+		case LINEAR:
+			break;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "NeuralNetwork" + Arrays.toString(sizes);
+	}
+
+}
@@ -0,0 +1,108 @@
+package battlecode.common;
+
+/**
+ * The layout of the fixed-size feature vector RobotController.observe
+ * writes for a network. The vector is the robot's own features followed by
+ * slots for the nearest robots, trees and bullets it can sense, nearest
+ * first. Slots without a body are all zeros, so PRESENT tells filled slots
+ * apart.
+ * <p>
+ * Robots and trees are those senseNearbyRobots() and senseNearbyTrees()
+ * would return, and bullets those senseNearbyBullets() would return.
+ * Offsets are relative to the observing robot and divided by its sensor
+ * radius, or its bullet sight radius for bullets, so they lie in [-1, 1]
+ * give or take a body radius.
+ */
+public class Observation {
+
+	/** Health over maximum health. */
+	public static final int SELF_HEALTH = 0;
+	/** The team's bullet supply over 1000. */
+	public static final int SELF_BULLETS = 1;
+	/** Rounds played over the round limit. */
+	public static final int SELF_ROUND = 2;
+	/** Position on the map over the map's width and height, in [0, 1). */
+	public static final int SELF_X = 3, SELF_Y = 4;
+	public static final int SELF_FEATURES = 5;
+
+	/** 1 in every filled robot, tree or bullet slot. */
+	public static final int PRESENT = 0;
+	/** Offset of the body or bullet from the observing robot. */
+	public static final int DX = 1, DY = 2;
+
+	/** Health over maximum health. */
+	public static final int ROBOT_HEALTH = 3;
+	/** 1 for an opponent, 0 for a teammate. */
+	public static final int ROBOT_ENEMY = 4;
+	/** RobotType ordinal over the largest ordinal. */
+	public static final int ROBOT_TYPE = 5;
+	public static final int ROBOT_FEATURES = 6;
+
+	/** Radius over the sensor radius. */
+	public static final int TREE_RADIUS = 3;
+	/** Health over the maximum health of a tree of its kind and size. */
+	public static final int TREE_HEALTH = 4;
+	/** 1 for the observer's team, -1 for the opponent, 0 for neutral. */
+	public static final int TREE_OWNER = 5;
+	public static final int TREE_FEATURES = 6;
+
+	/** Distance travelled per round, over the bullet sight radius. */
+	public static final int BULLET_VX = 3, BULLET_VY = 4;
+	public static final int BULLET_DAMAGE = 5;
+	public static final int BULLET_FEATURES = 6;
+
+	private final int robots, trees, bullets;
+
+	/**
+	 * @param robots the number of robot slots
+	 * @param trees the number of tree slots
+	 * @param bullets the number of bullet slots
+	 */
+	public Observation(int robots, int trees, int bullets) {
+		if (robots < 0 || trees < 0 || bullets < 0) throw new IllegalArgumentException("slot counts must not be negative");
+		this.robots = robots;
+		this.trees = trees;
+		this.bullets = bullets;
+	}
+
+	public int getRobots() {
+		return robots;
+	}
+
+	public int getTrees() {
+		return trees;
+	}
+
+	public int getBullets() {
+		return bullets;
+	}
+
+	/**
+	 * @return the length of the feature vector
+	 */
+	public int size() {
+		return SELF_FEATURES + robots * ROBOT_FEATURES + trees * TREE_FEATURES + bullets * BULLET_FEATURES;
+	}
+
+	/**
+	 * @return the index of the first feature of robot slot k
+	 */
+	public int robotOffset(int k) {
+		return SELF_FEATURES + k * ROBOT_FEATURES;
+	}
+
+	/**
+	 * @return the index of the first feature of tree slot k
+	 */
+	public int treeOffset(int k) {
+		return SELF_FEATURES + robots * ROBOT_FEATURES + k * TREE_FEATURES;
+	}
+
+	/**
+	 * @return the index of the first feature of bullet slot k
+	 */
+	public int bulletOffset(int k) {
+		return SELF_FEATURES + robots * ROBOT_FEATURES + trees * TREE_FEATURES + k * BULLET_FEATURES;
+	}
+
+}
@@ -0,0 +1,145 @@
+package battlecode.common;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Steps the bullets of a Map with hit detection spread over a fork/join pool.
+ * <p>
+ * Bodies do not move during the bullet phase; they can only be destroyed. So
+ * the phase is split in two:
+ * <ol>
+ * <li>Detection, in parallel over fixed chunks of bullets. Against the bodies
+ * as they were at the start of the phase, each bullet records every body on
+ * its path with the time it would hit it. Workers only read the map and write
+ * into their own chunk.</li>
+ * <li>Reduction, on the calling thread in the same order as the sequential
+ * step. Each bullet takes the earliest of its recorded bodies that is still
+ * alive, with ties going to the lower slot, and damage is applied at once.</li>
+ * </ol>
+ * A destroyed body is exactly one the sequential step would no longer see, so
+ * both produce the same result bit for bit.
+ */
+final class ParallelBulletPhase {
+
+	/** Bullets per detection task. */
+	static final int CHUNK = 256;
+
+	private final Map map;
+	private final ForkJoinPool pool;
+	private Chunk[] chunks = new Chunk[0];
+
+	ParallelBulletPhase(Map map, ForkJoinPool pool) {
+		this.map = map;
+		this.pool = pool;
+	}
+
+	/**
+	 * The bodies each bullet of one chunk would hit. Bullet i of the chunk
+	 * owns the pairs in [start[i], start[i + 1]) of hits, each a slot
+	 * followed by the raw bits of its hit time.
+	 */
+	private static final class Chunk {
+		final int[] start = new int[CHUNK + 1];
+		final IntList hits = new IntList();
+		final IntList candidates = new IntList();
+	}
+
+	/**
+	 * Moves every bullet one round, removing those that hit a body or leave
+	 * [minX, maxX) x [minY, maxY).
+	 */
+	void step(float minX, float minY, float maxX, float maxY) {
+		BulletPool bullets = map.bullets;
+		int n = bullets.size();
+		if (n == 0) return;
+		BulletIntegrator.step(bullets, minX, minY, maxX, maxY);
+		int count = (n + CHUNK - 1) / CHUNK;
+		if (chunks.length < count) {
+			int old = chunks.length;
+			chunks = Arrays.copyOf(chunks, count);
+			for (int k = old; k < count; k++) chunks[k] = new Chunk();
+		}
+		if (count == 1) detect(0, n);
+		else pool.invoke(new Detect(0, count, n));
+		EntityStore bodies = map.bodies;
+		// same backwards walk as the sequential step
+		for (int i = n - 1; i >= 0; i--) {
+			Chunk c = chunks[i / CHUNK];
+			int o = i % CHUNK;
+			int body = -1;
+			float min = Float.POSITIVE_INFINITY;
+			for (int h = c.start[o], end = c.start[o + 1]; h < end; h += 2) {
+				int s = c.hits.get(h);
+				if (bodies.kind[s] == EntityStore.FREE) continue;
+				float t = Float.intBitsToFloat(c.hits.get(h + 1));
+				if (t < min || (t == min && s < body)) {
+					min = t;
+					body = s;
+				}
+			}
+			map.finishBullet(i, body, bullets.nextX[i], bullets.nextY[i], bullets.leaving[i]);
+		}
+	}
+
+	/**
+	 * Records the hits of every bullet in chunk k, which holds the bullets
+	 * in [k * CHUNK, min((k + 1) * CHUNK, n)).
+	 */
+	private void detect(int k, int n) {
+		Chunk c = chunks[k];
+		BulletPool bullets = map.bullets;
+		EntityStore bodies = map.bodies;
+		IntList hits = c.hits;
+		IntList candidates = c.candidates;
+		hits.clear();
+		int lo = k * CHUNK, hi = Math.min(lo + CHUNK, n);
+		for (int i = lo; i < hi; i++) {
+			c.start[i - lo] = hits.size();
+			float x0 = bullets.x[i], y0 = bullets.y[i];
+			float x1 = bullets.nextX[i], y1 = bullets.nextY[i];
+			float dx = bullets.dx[i], dy = bullets.dy[i];
+			candidates.clear();
+			map.robotGrid.querySegment(x0, y0, x1, y1, candidates);
+			map.treeGrid.querySegment(x0, y0, x1, y1, candidates);
+			for (int j = 0, m = candidates.size(); j < m; j++) {
+				int s = candidates.get(j);
+				float t = Map.hitTime(x0, y0, dx, dy, bodies.x[s], bodies.y[s], bodies.radius[s]);
+				if (t == Float.POSITIVE_INFINITY) continue;
+				hits.add(s);
+				hits.add(Float.floatToRawIntBits(t));
+			}
+		}
+		c.start[hi - lo] = hits.size();
+	}
+
+	/**
+	 * Runs detection for chunks [from, to), halving the range until a
+	 * single chunk is left.
+	 */
+	private final class Detect extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to, n;
+
+		Detect(int from, int to, int n) {
+			this.from = from;
+			this.to = to;
+			this.n = n;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				detect(from, n);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new Detect(from, mid, n), new Detect(mid, to, n));
+		}
+
+	}
+
+}
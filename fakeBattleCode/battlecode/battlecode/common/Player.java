@@ -0,0 +1,19 @@
+package battlecode.common;
+
+/**
+ * Player code for a single robot. The engine calls runTurn once every round
+ * for as long as the robot is alive; returning from it ends the turn.
+ */
+public interface Player {
+
+	/**
+	 * Plays one turn for the robot controlled by rc. An uncaught
+	 * GameActionException ends the turn; any other uncaught exception
+	 * destroys the robot.
+	 *
+	 * @param rc the controller of the robot whose turn it is
+	 * @throws GameActionException if an action fails and the player does not handle it
+	 */
+	void runTurn(RobotController rc) throws GameActionException;
+
+}
@@ -0,0 +1,15 @@
+package battlecode.common;
+
+/**
+ * Creates the player code for a team. The engine asks for a new Player for
+ * every robot of the team, including ones spawned during the game.
+ */
+public interface PlayerFactory {
+
+	/**
+	 * @param robot the robot the player will control
+	 * @return the player code for that robot
+	 */
+	Player create(RobotInfo robot);
+
+}
@@ -0,0 +1,290 @@
+package battlecode.common;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a replay written by ReplayWriter and rebuilds the state of the match
+ * at any round. The file is memory-mapped in windows of up to 1 GiB, so
+ * files larger than one mapping can address are read the same way, and
+ * only the pages a seek touches are ever loaded.
+ * <p>
+ * A seek starts at the last keyframe at or before the requested round and
+ * applies the records from there, so its cost depends on the keyframe
+ * interval, not on how far into the file the round is. Keyframes are found
+ * through the index at the end of the file. If the file has no index, for
+ * example because the writer was never closed, the records are scanned once
+ * when the reader is opened instead.
+ */
+public class ReplayReader implements AutoCloseable {
+
+	private static final long WINDOW = 1L << 30;
+
+	private final FileChannel channel;
+	private final long size;
+	private MappedByteBuffer window;
+	private long windowStart;
+	/** File offset of the next byte to read. */
+	private long pos;
+
+	private final int width, height, rounds;
+	private final MapLocation origin;
+	private final long seed;
+	private int keyframes;
+	private int[] keyframeRounds = new int[16];
+	private long[] keyframeOffsets = new long[16];
+	private int lastRound;
+
+	public ReplayReader(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			this.size = channel.size();
+			if (size < ReplayWriter.HEADER_BYTES) throw new IOException("not a replay file: " + path);
+			ByteBuffer h = read(ReplayWriter.HEADER_BYTES);
+			if (h.getInt() != ReplayWriter.MAGIC) throw new IOException("not a replay file: " + path);
+			short version = h.getShort();
+			if (version != ReplayWriter.VERSION) throw new IOException("unsupported replay version " + version);
+			width = h.getInt();
+			height = h.getInt();
+			rounds = h.getInt();
+			origin = new MapLocation(h.getFloat(), h.getFloat());
+			seed = h.getLong();
+			if (!readIndex()) scan();
+			if (keyframes == 0) throw new IOException("replay has no keyframe: " + path);
+			lastRound = findLastRound();
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the round limit of the recorded map
+	 */
+	public int getRounds() {
+		return rounds;
+	}
+
+	public MapLocation getOrigin() {
+		return origin;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return the first round that can be sought to, the one the recording
+	 * started at
+	 */
+	public int getFirstRound() {
+		return keyframeRounds[0];
+	}
+
+	/**
+	 * @return the last round recorded in full
+	 */
+	public int getLastRound() {
+		return lastRound;
+	}
+
+	/**
+	 * Rebuilds the state of the match at the end of the given round.
+	 *
+	 * @param round a round between getFirstRound() and getLastRound()
+	 * @return a new state the caller owns
+	 */
+	public ReplayState seek(int round) {
+		if (round < getFirstRound() || round > lastRound) {
+			throw new IllegalArgumentException("round " + round + " is outside [" + getFirstRound() + ", " + lastRound + "]");
+		}
+		int k = Arrays.binarySearch(keyframeRounds, 0, keyframes, round);
+		if (k < 0) k = -k - 2;
+		pos = keyframeOffsets[k];
+		ReplayState state = new ReplayState();
+		if (read(1).get() != ReplayWriter.KEYFRAME) throw new IllegalStateException("keyframe index points at another record");
+		readKeyframe(state);
+		while (state.round < round) {
+			apply(state);
+		}
+		return state;
+	}
+
+	/**
+	 * Reads the rest of a KEYFRAME record and the bodies and bullets that
+	 * follow it into an empty state.
+	 */
+	private void readKeyframe(ReplayState state) {
+		ByteBuffer b = read(ReplayWriter.RECORD_BYTES[ReplayWriter.KEYFRAME] - 1);
+		state.economy(b.getInt(), b.getDouble(), b.getDouble(), b.getInt(), b.getInt());
+		int records = b.getInt() + b.getInt();
+		for (int r = 0; r < records; r++) {
+			apply(state);
+		}
+	}
+
+	/**
+	 * Applies the record at pos to the state.
+	 */
+	private void apply(ReplayState state) {
+		byte tag = read(1).get();
+		if (tag < ReplayWriter.SPAWN || tag > ReplayWriter.KEYFRAME) {
+			throw new IllegalStateException("replay ends after round " + state.round);
+		}
+		ByteBuffer b = read(ReplayWriter.RECORD_BYTES[tag] - 1);
+		switch (tag) {
+		case ReplayWriter.SPAWN:
+			state.spawn(b.getInt(), b.get(), b.get(), b.get(), b.getFloat(), b.getFloat(), b.getFloat(), b.getFloat(), b.getInt());
+			break;
+		case ReplayWriter.MOVE:
+			state.move(b.getInt(), b.getFloat(), b.getFloat());
+			break;
+		case ReplayWriter.DAMAGE:
+			state.damage(b.getInt(), b.getFloat());
+			break;
+		case ReplayWriter.DEATH:
+			state.death(b.getInt());
+			break;
+		case ReplayWriter.FIRE:
+		case ReplayWriter.BULLET:
+			state.bullet(b.getInt(), b.getFloat(), b.getFloat(), b.getFloat(), b.getFloat(), b.getFloat(), tag == ReplayWriter.FIRE);
+			break;
+		case ReplayWriter.BULLET_END:
+			state.bulletEnd(b.getInt());
+			break;
+		case ReplayWriter.SHAKE:
+			state.shake(b.getInt());
+			break;
+		case ReplayWriter.ROUND:
+			state.endRound(b.getInt(), b.getDouble(), b.getDouble(), b.getInt(), b.getInt());
+			break;
+		case ReplayWriter.KEYFRAME:
+			// repeats the state already built; skip its bodies and bullets
+			b.position(b.position() + 4 + 8 + 8 + 4 + 4);
+			pos += (long)b.getInt() * ReplayWriter.RECORD_BYTES[ReplayWriter.SPAWN]
+					+ (long)b.getInt() * ReplayWriter.RECORD_BYTES[ReplayWriter.BULLET];
+			break;
+		}
+	}
+
+	/**
+	 * Loads the keyframe index from the end of the file.
+	 *
+	 * @return false if the file has no index
+	 */
+	private boolean readIndex() {
+		if (size < ReplayWriter.HEADER_BYTES + 1 + 4 + ReplayWriter.FOOTER_BYTES) return false;
+		pos = size - ReplayWriter.FOOTER_BYTES;
+		ByteBuffer f = read(ReplayWriter.FOOTER_BYTES);
+		long index = f.getLong();
+		if (f.getInt() != ReplayWriter.MAGIC || index < ReplayWriter.HEADER_BYTES || index > size - ReplayWriter.FOOTER_BYTES - 5) return false;
+		pos = index;
+		ByteBuffer b = read(1 + 4);
+		if (b.get() != ReplayWriter.INDEX) return false;
+		int count = b.getInt();
+		for (int k = 0; k < count; k++) {
+			b = read(4 + 8);
+			addKeyframe(b.getInt(), b.getLong());
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the keyframes by walking every record, stopping at an index or
+	 * at a record cut off by the end of the file.
+	 */
+	private void scan() {
+		pos = ReplayWriter.HEADER_BYTES;
+		while (pos < size) {
+			long start = pos;
+			byte tag = read(1).get();
+			if (tag < ReplayWriter.SPAWN || tag > ReplayWriter.KEYFRAME) break;
+			int bytes = ReplayWriter.RECORD_BYTES[tag];
+			if (start + bytes > size) break;
+			if (tag == ReplayWriter.KEYFRAME) {
+				ByteBuffer b = read(bytes - 1);
+				int round = b.getInt();
+				b.position(b.position() + 8 + 8 + 4 + 4);
+				long end = pos + (long)b.getInt() * ReplayWriter.RECORD_BYTES[ReplayWriter.SPAWN]
+						+ (long)b.getInt() * ReplayWriter.RECORD_BYTES[ReplayWriter.BULLET];
+				if (end > size) break;
+				addKeyframe(round, start);
+				pos = end;
+			} else {
+				pos = start + bytes;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of the last ROUND record, or of the last keyframe
+	 * if none follows it
+	 */
+	private int findLastRound() {
+		int last = keyframeRounds[keyframes - 1];
+		pos = keyframeOffsets[keyframes - 1] + 1;
+		ByteBuffer b = read(ReplayWriter.RECORD_BYTES[ReplayWriter.KEYFRAME] - 1);
+		b.position(b.position() + 4 + 8 + 8 + 4 + 4);
+		pos += (long)b.getInt() * ReplayWriter.RECORD_BYTES[ReplayWriter.SPAWN]
+				+ (long)b.getInt() * ReplayWriter.RECORD_BYTES[ReplayWriter.BULLET];
+		while (pos < size) {
+			long start = pos;
+			byte tag = read(1).get();
+			if (tag < ReplayWriter.SPAWN || tag > ReplayWriter.ROUND || start + ReplayWriter.RECORD_BYTES[tag] > size) break;
+			if (tag == ReplayWriter.ROUND) last = read(4).getInt();
+			pos = start + ReplayWriter.RECORD_BYTES[tag];
+		}
+		return last;
+	}
+
+	private void addKeyframe(int round, long offset) {
+		if (keyframes == keyframeRounds.length) {
+			keyframeRounds = Arrays.copyOf(keyframeRounds, keyframes * 2);
+			keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframes * 2);
+		}
+		keyframeRounds[keyframes] = round;
+		keyframeOffsets[keyframes++] = offset;
+	}
+
+	/**
+	 * @return a buffer positioned at pos with the given number of bytes
+	 * readable, after which pos is advanced past them
+	 */
+	private ByteBuffer read(int bytes) {
+		if (pos + bytes > size) throw new IllegalStateException("replay is truncated");
+		if (window == null || pos < windowStart || pos + bytes > windowStart + window.capacity()) {
+			try {
+				windowStart = pos;
+				window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(WINDOW, size - pos));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			window.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		window.position((int)(pos - windowStart));
+		pos += bytes;
+		return window;
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+
+}
@@ -0,0 +1,152 @@
+package battlecode.common;
+
+/**
+ * The state of a recorded match at the end of one round, rebuilt by
+ * ReplayReader. Bodies and bullets are kept in the same component stores as
+ * on a live Map, and handed out as RobotInfo, TreeInfo and BulletInfo.
+ */
+public class ReplayState {
+
+	private static final Team[] TEAMS = Team.values();
+	private static final RobotType[] TYPES = RobotType.values();
+
+	final EntityStore bodies = new EntityStore();
+	final BulletPool bullets = new BulletPool();
+	int round;
+	final double[] teamBullets = new double[2];
+	final int[] victoryPoints = new int[2];
+
+	ReplayState() {
+	}
+
+	/**
+	 * @return the number of rounds played, 0 for the state before the first
+	 */
+	public int getRound() {
+		return round;
+	}
+
+	public double getBullets(Team t) {
+		return teamBullets[t == Team.A ? 0 : 1];
+	}
+
+	public int getVictoryPoints(Team t) {
+		return victoryPoints[t == Team.A ? 0 : 1];
+	}
+
+	/**
+	 * @return the robot with the given ID, or null
+	 */
+	public RobotInfo getRobot(int id) {
+		int s = bodies.robotSlot(id);
+		return s < 0 ? null : bodies.robotInfo(s);
+	}
+
+	/**
+	 * @return the tree with the given ID, or null
+	 */
+	public TreeInfo getTree(int id) {
+		int s = bodies.treeSlot(id);
+		return s < 0 ? null : bodies.treeInfo(s);
+	}
+
+	public RobotInfo[] getRobots() {
+		RobotInfo[] ret = new RobotInfo[count(EntityStore.ROBOT)];
+		int index = 0;
+		for (int s = 0, end = bodies.end(); s < end; s++) {
+			if (bodies.kind[s] == EntityStore.ROBOT) ret[index++] = bodies.robotInfo(s);
+		}
+		return ret;
+	}
+
+	public TreeInfo[] getTrees() {
+		TreeInfo[] ret = new TreeInfo[count(EntityStore.TREE)];
+		int index = 0;
+		for (int s = 0, end = bodies.end(); s < end; s++) {
+			if (bodies.kind[s] == EntityStore.TREE) ret[index++] = bodies.treeInfo(s);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return every bullet in flight
+	 */
+	public BulletInfo[] getBulletInfos() {
+		BulletInfo[] ret = new BulletInfo[bullets.size()];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = bullets.get(i);
+		}
+		return ret;
+	}
+
+	private int count(byte kind) {
+		int count = 0;
+		for (int s = 0, end = bodies.end(); s < end; s++) {
+			if (bodies.kind[s] == kind) count++;
+		}
+		return count;
+	}
+
+	void spawn(int id, byte kind, byte team, byte type, float x, float y, float radius, float health, int containedBullets) {
+		MapLocation loc = new MapLocation(x, y);
+		if (kind == EntityStore.ROBOT) {
+			bodies.addRobot(new RobotInfo(id, TEAMS[team], TYPES[type], loc, health, 0, 0));
+		} else {
+			RobotType contained = type == EntityStore.NO_TYPE ? null : TYPES[type];
+			bodies.addTree(new TreeInfo(id, TEAMS[team], loc, radius, health, containedBullets, contained));
+		}
+	}
+
+	void move(int id, float x, float y) {
+		int s = bodies.slotOf(id);
+		bodies.x[s] = x;
+		bodies.y[s] = y;
+	}
+
+	void damage(int id, float health) {
+		bodies.health[bodies.slotOf(id)] = health;
+	}
+
+	void death(int id) {
+		bodies.remove(bodies.slotOf(id));
+	}
+
+	/**
+	 * Adds a bullet at (x, y), moving it once if it was just fired.
+	 */
+	void bullet(int id, float x, float y, float radians, float speed, float damage, boolean fired) {
+		int i = bullets.add(id, x, y, new Direction(radians), speed, damage);
+		if (fired) {
+			bullets.x[i] += bullets.dx[i];
+			bullets.y[i] += bullets.dy[i];
+		}
+	}
+
+	void bulletEnd(int id) {
+		bullets.remove(bullets.indexOf(id));
+	}
+
+	void shake(int id) {
+		bodies.takeContainedBullets(bodies.slotOf(id));
+	}
+
+	/**
+	 * Closes a round: every bullet in flight moves one step.
+	 */
+	void endRound(int round, double bulletsA, double bulletsB, int vpA, int vpB) {
+		for (int i = 0, n = bullets.size(); i < n; i++) {
+			bullets.x[i] += bullets.dx[i];
+			bullets.y[i] += bullets.dy[i];
+		}
+		economy(round, bulletsA, bulletsB, vpA, vpB);
+	}
+
+	void economy(int round, double bulletsA, double bulletsB, int vpA, int vpB) {
+		this.round = round;
+		teamBullets[0] = bulletsA;
+		teamBullets[1] = bulletsB;
+		victoryPoints[0] = vpA;
+		victoryPoints[1] = vpB;
+	}
+
+}
@@ -0,0 +1,221 @@
+package battlecode.common;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streams what happens in a match to a replay file. A Map given a writer
+ * through Map.setReplay reports every change to its bodies, bullets and
+ * economy, and each report is appended to a direct buffer that only goes to
+ * disk when it fills up, so recording costs the engine a few stores per
+ * event.
+ * <p>
+ * The file is little-endian. It starts with a header:
+ * <pre>
+ * int magic, short version, int width, int height, int rounds,
+ * float originX, float originY, long seed
+ * </pre>
+ * followed by records, each a tag byte and its fields:
+ * <pre>
+ * KEYFRAME   int round, double bulletsA, double bulletsB, int vpA, int vpB,
+ *            int bodies, int bullets
+ *            then that many SPAWN and BULLET records
+ * SPAWN      int id, byte kind, byte team, byte type, float x, float y,
+ *            float radius, float health, int containedBullets
+ * MOVE       int id, float x, float y
+ * DAMAGE     int id, float health
+ * DEATH      int id
+ * FIRE       int id, float x, float y, float radians, float speed, float damage
+ * BULLET     the same fields as FIRE
+ * BULLET_END int id
+ * SHAKE      int id
+ * ROUND      int round, double bulletsA, double bulletsB, int vpA, int vpB
+ * INDEX      int count, then count times: int round, long offset
+ * </pre>
+ * kind, team and type use the encoding of EntityStore. Bullets are not
+ * recorded as they fly. FIRE is a bullet fired from (x, y), which moves
+ * right away; BULLET is one already in flight at (x, y). Either way the
+ * bullet then moves once more at every ROUND record until its BULLET_END,
+ * each move adding Direction.getDeltaX/getDeltaY of its speed. SHAKE is a
+ * tree shaken, which then holds no bullets. Every ROUND record closes the
+ * round with that number.
+ * <p>
+ * A KEYFRAME holds the complete state after its round and replaces whatever
+ * came before it. One is written when recording starts and then after every
+ * keyframeInterval-th round. Closing the writer appends an INDEX of the
+ * keyframes' file offsets, then the offset of the INDEX record as a long and
+ * the magic number, which lets ReplayReader jump to any round without
+ * reading the rounds before it.
+ */
+public class ReplayWriter implements AutoCloseable {
+
+	static final int MAGIC = 0x50524342; // "BCRP" in file order
+	static final short VERSION = 3;
+	static final int HEADER_BYTES = 4 + 2 + 4 * 3 + 4 * 2 + 8;
+
+	static final byte SPAWN = 1, MOVE = 2, DAMAGE = 3, DEATH = 4, FIRE = 5, BULLET = 6, BULLET_END = 7, SHAKE = 8,
+			ROUND = 9, KEYFRAME = 10, INDEX = 11;
+
+	/** Size of each fixed-size record, tag included, indexed by tag. */
+	static final int[] RECORD_BYTES = {0, 28, 13, 9, 5, 25, 25, 5, 5, 29, 37};
+	/** Bytes after the INDEX record: its offset and the magic number. */
+	static final int FOOTER_BYTES = 8 + 4;
+
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private final FileChannel channel;
+	private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+	private final int keyframeInterval;
+	private boolean started;
+	/** Bytes already handed to the channel. */
+	private long written;
+	private int keyframes;
+	private int[] keyframeRounds = new int[16];
+	private long[] keyframeOffsets = new long[16];
+
+	/**
+	 * Creates a writer that stores a keyframe every 100 rounds.
+	 */
+	public ReplayWriter(Path path) throws IOException {
+		this(path, 100);
+	}
+
+	public ReplayWriter(Path path, int keyframeInterval) throws IOException {
+		if (keyframeInterval <= 0) throw new IllegalArgumentException("keyframeInterval must be positive");
+		this.keyframeInterval = keyframeInterval;
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Writes the header and a keyframe of the current state of the map.
+	 * Called by Map.setReplay.
+	 */
+	void begin(Map map, long seed) {
+		if (started) throw new IllegalStateException("replay already started");
+		started = true;
+		MapLocation origin = map.getOrigin();
+		reserve(HEADER_BYTES).putInt(MAGIC).putShort(VERSION).putInt(map.getWidth()).putInt(map.getHeight())
+				.putInt(map.getRounds()).putFloat(origin.x).putFloat(origin.y).putLong(seed);
+		keyframe(map);
+	}
+
+	private void keyframe(Map map) {
+		EntityStore b = map.bodies;
+		BulletPool bullets = map.bullets;
+		int bodies = 0;
+		for (int s = 0, end = b.end(); s < end; s++) {
+			if (b.kind[s] != EntityStore.FREE) bodies++;
+		}
+		if (keyframes == keyframeRounds.length) {
+			keyframeRounds = Arrays.copyOf(keyframeRounds, keyframes * 2);
+			keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframes * 2);
+		}
+		reserve(RECORD_BYTES[KEYFRAME]);
+		keyframeRounds[keyframes] = map.getRoundsPassed();
+		keyframeOffsets[keyframes++] = written + buf.position();
+		buf.put(KEYFRAME).putInt(map.getRoundsPassed()).putDouble(map.getBullets(Team.A)).putDouble(map.getBullets(Team.B))
+				.putInt(map.getVictoryPoints(Team.A)).putInt(map.getVictoryPoints(Team.B)).putInt(bodies).putInt(bullets.size());
+		for (int s = 0, end = b.end(); s < end; s++) {
+			if (b.kind[s] != EntityStore.FREE) spawn(b, s);
+		}
+		for (int i = 0; i < bullets.size(); i++) bullet(BULLET, bullets, i);
+	}
+
+	void spawn(EntityStore b, int s) {
+		reserve(28).put(SPAWN).putInt(b.id[s]).put(b.kind[s]).put(b.team[s]).put(b.type[s])
+				.putFloat(b.x[s]).putFloat(b.y[s]).putFloat(b.radius[s]).putFloat(b.health[s]).putInt(b.containedBullets[s]);
+	}
+
+	void move(int id, float x, float y) {
+		reserve(13).put(MOVE).putInt(id).putFloat(x).putFloat(y);
+	}
+
+	void damage(int id, float health) {
+		reserve(9).put(DAMAGE).putInt(id).putFloat(health);
+	}
+
+	void death(int id) {
+		reserve(5).put(DEATH).putInt(id);
+	}
+
+	void fire(BulletPool p, int i) {
+		bullet(FIRE, p, i);
+	}
+
+	private void bullet(byte tag, BulletPool p, int i) {
+		reserve(25).put(tag).putInt(p.id[i]).putFloat(p.x[i]).putFloat(p.y[i])
+				.putFloat(p.radians[i]).putFloat(p.speed[i]).putFloat(p.damage[i]);
+	}
+
+	void bulletEnd(int id) {
+		reserve(5).put(BULLET_END).putInt(id);
+	}
+
+	void shake(int id) {
+		reserve(5).put(SHAKE).putInt(id);
+	}
+
+	/**
+	 * Closes the round the map just finished, following it with a keyframe
+	 * when one is due.
+	 */
+	void round(Map map) {
+		int round = map.getRoundsPassed();
+		reserve(29).put(ROUND).putInt(round).putDouble(map.getBullets(Team.A)).putDouble(map.getBullets(Team.B))
+				.putInt(map.getVictoryPoints(Team.A)).putInt(map.getVictoryPoints(Team.B));
+		if (round % keyframeInterval == 0) keyframe(map);
+	}
+
+	/**
+	 * @return the buffer, with room for at least the given number of bytes
+	 */
+	private ByteBuffer reserve(int bytes) {
+		if (buf.remaining() < bytes) drain();
+		return buf;
+	}
+
+	private void drain() {
+		buf.flip();
+		try {
+			while (buf.hasRemaining()) written += channel.write(buf);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		buf.clear();
+	}
+
+	/**
+	 * Writes out everything recorded so far.
+	 */
+	public void flush() {
+		drain();
+	}
+
+	/**
+	 * Writes the keyframe index and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (started) {
+				long index = written + buf.position();
+				reserve(1 + 4).put(INDEX).putInt(keyframes);
+				for (int k = 0; k < keyframes; k++) {
+					reserve(4 + 8).putInt(keyframeRounds[k]).putLong(keyframeOffsets[k]);
+				}
+				reserve(FOOTER_BYTES).putLong(index).putInt(MAGIC);
+				drain();
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+}
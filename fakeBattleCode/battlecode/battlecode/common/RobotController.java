@@ -1,6 +1,7 @@
 package battlecode.common;
 
-import java.util.LinkedList;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
 
 /**
  * A RobotController allows contestants to make their robot sense and interact
@@ -11,16 +12,97 @@ import java.util.LinkedList;
 @SuppressWarnings("unused")
 public strictfp class RobotController {
 	
+	private static final int LAST_TYPE = RobotType.values().length - 1;
+	
 	private final Map map;
-	private RobotInfo ri;
+	private final int robotID;
+	private final Team robotTeam;
+	private final RobotType robotType;
+	/** This robot's slot in map.bodies, refreshed at the start of each turn. */
+	private int self;
+	private final BytecodeBudget budget;
 	private int attacks = 0;
 	private int moves = 0;
+	private int shakes = 0;
+	private int waters = 0;
+	private final IntList nearby = new IntList();
+	private int[] nearestSlots = new int[0];
+	private float[] nearestDistances = new float[0];
+	private float[] observation = new float[0];
 	
 	public RobotController(Map map, RobotInfo ri) {
 		this.map = map;
-		this.ri = ri;
-		if (ri.type.equals(RobotType.ARCHON)) RobotMonitor.setMaxBytecodes(20000);
-		else RobotMonitor.setMaxBytecodes(10000);
+		this.robotID = ri.ID;
+		this.robotTeam = ri.team;
+		this.robotType = ri.type;
+		this.self = map.bodies.robotSlot(ri.ID);
+		this.budget = new BytecodeBudget(ri.type.bytecodeLimit);
+	}
+	
+	/**
+	 * Called by the engine before this robot's turn. Picks up changes other
+	 * robots made to this robot, resets the per-turn counters and the
+	 * bytecode budget, and makes the budget the one RobotMonitor charges on
+	 * this thread.
+	 *
+	 * @return false if the robot has died since its last turn
+	 */
+	boolean beginTurn() {
+		self = map.bodies.robotSlot(robotID);
+		if (self < 0) return false;
+		attacks = 0;
+		moves = 0;
+		shakes = 0;
+		waters = 0;
+		budget.reset();
+		RobotMonitor.setRunning(budget);
+		return true;
+	}
+	
+	/**
+	 * Continues a turn that was begun and ended earlier this round, keeping
+	 * its bytecode use and action counts.
+	 *
+	 * @return whether the robot is still alive
+	 */
+	boolean resumeTurn() {
+		self = map.bodies.robotSlot(robotID);
+		if (self < 0) return false;
+		RobotMonitor.setRunning(budget);
+		return true;
+	}
+	
+	void endTurn() {
+		RobotMonitor.setRunning(null);
+	}
+	
+	BytecodeBudget getBudget() {
+		return budget;
+	}
+	
+	boolean isAlive() {
+		return map.bodies.robotSlot(robotID) >= 0;
+	}
+	
+	int getRobotID() {
+		return robotID;
+	}
+	
+	Team getRobotTeam() {
+		return robotTeam;
+	}
+	
+	void destroy() {
+		int s = map.bodies.robotSlot(robotID);
+		if (s >= 0) map.removeBody(s);
+	}
+	
+	private float selfX() {
+		return map.bodies.x[self];
+	}
+	
+	private float selfY() {
+		return map.bodies.y[self];
 	}
 
     // *********************************
@@ -36,7 +118,7 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     int getRoundLimit() {
-    	RobotMonitor.useBytecodes(1);
+    	budget.charge(1);
     	return map.getRounds();
     }
 
@@ -50,7 +132,7 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     int getRoundNum() {
-    	RobotMonitor.useBytecodes(1);
+    	budget.charge(1);
     	return map.getRoundsPassed();
     }
 
@@ -62,8 +144,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     float getTeamBullets() {
-    	RobotMonitor.useBytecodes(1);
-    	return (float)map.getBullets(ri.team);
+    	budget.charge(1);
+    	return (float)map.getBullets(robotTeam);
     }
 
     /**
@@ -74,8 +156,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     int getTeamVictoryPoints() {
-    	RobotMonitor.useBytecodes(1);
-    	return map.getVictoryPoints(ri.team);
+    	budget.charge(1);
+    	return map.getVictoryPoints(robotTeam);
     }
 
     /**
@@ -88,10 +170,11 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     int getRobotCount() {
-    	RobotMonitor.useBytecodes(20);
+    	budget.charge(20);
     	int ret = 0;
-    	for (RobotInfo r : map.robots) {
-    		if (r.team.equals(ri.team)) ret++;
+    	EntityStore b = map.bodies;
+    	for (int s = 0, end = b.end(); s < end; s++) {
+    		if (b.kind[s] == EntityStore.ROBOT && b.team[s] == robotTeam.ordinal()) ret++;
     	}
     	return ret;
     }
@@ -104,10 +187,11 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     int getTreeCount() {
-    	RobotMonitor.useBytecodes(20);
+    	budget.charge(20);
     	int ret = 0;
-    	for (TreeInfo t : map.trees) {
-    		if (t.team.equals(ri.team)) ret++;
+    	EntityStore b = map.bodies;
+    	for (int s = 0, end = b.end(); s < end; s++) {
+    		if (b.kind[s] == EntityStore.TREE && b.team[s] == robotTeam.ordinal()) ret++;
     	}
     	return ret;
     }
@@ -125,7 +209,7 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     MapLocation[] getInitialArchonLocations(Team t) {
-    	RobotMonitor.useBytecodes(100);
+    	budget.charge(100);
     	return map.getStartingArchons(t);
     	
     }
@@ -142,8 +226,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     int getID() {
-    	RobotMonitor.useBytecodes(1);
-    	return ri.ID;
+    	budget.charge(1);
+    	return robotID;
     }
 
     /**
@@ -154,8 +238,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     Team getTeam() {
-    	RobotMonitor.useBytecodes(1);
-    	return ri.team;
+    	budget.charge(1);
+    	return robotTeam;
     }
 
     /**
@@ -166,8 +250,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     RobotType getType() {
-    	RobotMonitor.useBytecodes(1);
-    	return ri.type;
+    	budget.charge(1);
+    	return robotType;
     }
 
     /**
@@ -178,8 +262,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     MapLocation getLocation() {
-    	RobotMonitor.useBytecodes(1);
-    	return ri.location;
+    	budget.charge(1);
+    	return new MapLocation(selfX(), selfY());
     }
 
     /**
@@ -190,8 +274,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     float getHealth() {
-    	RobotMonitor.useBytecodes(1);
-    	return (float)ri.health;
+    	budget.charge(1);
+    	return map.bodies.health[self];
     }
     
     /**
@@ -202,7 +286,7 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     int getAttackCount() {
-    	RobotMonitor.useBytecodes(1);
+    	budget.charge(1);
     	return attacks;
     }
     
@@ -214,7 +298,7 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     int getMoveCount() {
-    	RobotMonitor.useBytecodes(1);
+    	budget.charge(1);
     	return moves;
     }
 
@@ -233,8 +317,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean onTheMap(MapLocation loc) throws GameActionException {
-    	RobotMonitor.useBytecodes(5);
-    	if (Math.sqrt(Math.pow(loc.x - ri.location.x, 2) + Math.pow(loc.y - ri.location.y, 2)) > ri.type.sensorRadius) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Check if locaiton exists");
+    	budget.charge(5);
+    	if (!Geometry.pointWithin(selfX(), selfY(), robotType.sensorRadius, loc.x, loc.y)) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Check if locaiton exists");
     	else {
     		if (loc.x >= map.getOrigin().x && loc.x < map.getOrigin().x + map.getWidth() && loc.y >= map.getOrigin().y && loc.y < map.getOrigin().y + map.getHeight()) return true;
     		else return false;
@@ -254,19 +338,10 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean onTheMap(MapLocation center, float radius) throws GameActionException {
-    	RobotMonitor.useBytecodes(5);
-    	MapLocation top = new MapLocation(center.x, center.y - radius);
-    	MapLocation right = new MapLocation(center.x + radius, center.y);
-    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-    	MapLocation left = new MapLocation(center.x - radius, center.y);
-    	double distTop = Math.sqrt(Math.pow(top.x - ri.location.x, 2) + Math.pow(top.y - ri.location.y, 2));
-    	double distRight = Math.sqrt(Math.pow(right.x - ri.location.x, 2) + Math.pow(right.y - ri.location.y, 2));
-    	double distLeft = Math.sqrt(Math.pow(left.x - ri.location.x, 2) + Math.pow(left.y - ri.location.y, 2));
-    	double distBottom = Math.sqrt(Math.pow(bottom.x - ri.location.x, 2) + Math.pow(bottom.y - ri.location.y, 2));
-    	double badDistance = ri.type.sensorRadius;
-    	if (distTop > badDistance || distRight > badDistance || distLeft > badDistance || distBottom > badDistance) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Check if circle exists");
+    	budget.charge(5);
+    	if (!Geometry.circleInside(selfX(), selfY(), robotType.sensorRadius, center.x, center.y, radius)) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Check if circle exists");
     	else {
-    		if (top.y >= map.getOrigin().y && right.x < map.getOrigin().x + map.getWidth() && left.x >= map.getOrigin().x && bottom.y < map.getOrigin().y + map.getHeight()) return true;
+    		if (center.y - radius >= map.getOrigin().y && center.x + radius < map.getOrigin().x + map.getWidth() && center.x - radius >= map.getOrigin().x && center.y + radius < map.getOrigin().y + map.getHeight()) return true;
     		else return false;
     	}
     }
@@ -280,8 +355,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean canSenseLocation(MapLocation loc) {
-    	RobotMonitor.useBytecodes(5);
-    	if (Math.sqrt(Math.pow(loc.x - ri.location.x, 2) + Math.pow(loc.y - ri.location.y, 2)) > ri.type.sensorRadius) return false;
+    	budget.charge(5);
+    	if (!Geometry.pointWithin(selfX(), selfY(), robotType.sensorRadius, loc.x, loc.y)) return false;
     	else return true;
     }
 
@@ -295,18 +370,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean canSensePartOfCircle(MapLocation center, float radius) {
-    	RobotMonitor.useBytecodes(5);
-    	MapLocation top = new MapLocation(center.x, center.y - radius);
-    	MapLocation right = new MapLocation(center.x + radius, center.y);
-    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-    	MapLocation left = new MapLocation(center.x - radius, center.y);
-    	double distTop = Math.sqrt(Math.pow(top.x - ri.location.x, 2) + Math.pow(top.y - ri.location.y, 2));
-    	double distRight = Math.sqrt(Math.pow(right.x - ri.location.x, 2) + Math.pow(right.y - ri.location.y, 2));
-    	double distLeft = Math.sqrt(Math.pow(left.x - ri.location.x, 2) + Math.pow(left.y - ri.location.y, 2));
-    	double distBottom = Math.sqrt(Math.pow(bottom.x - ri.location.x, 2) + Math.pow(bottom.y - ri.location.y, 2));
-    	double badDistance = ri.type.sensorRadius;
-    	if (distTop > badDistance && distRight > badDistance && distLeft > badDistance && distBottom > badDistance) return false;
-    	else return true;
+    	budget.charge(5);
+    	return Geometry.circleOverlaps(selfX(), selfY(), robotType.sensorRadius, center.x, center.y, radius);
     }
 
     /**
@@ -319,18 +384,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean canSenseAllOfCircle(MapLocation center, float radius) {
-    	RobotMonitor.useBytecodes(5);
-    	MapLocation top = new MapLocation(center.x, center.y - radius);
-    	MapLocation right = new MapLocation(center.x + radius, center.y);
-    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-    	MapLocation left = new MapLocation(center.x - radius, center.y);
-    	double distTop = Math.sqrt(Math.pow(top.x - ri.location.x, 2) + Math.pow(top.y - ri.location.y, 2));
-    	double distRight = Math.sqrt(Math.pow(right.x - ri.location.x, 2) + Math.pow(right.y - ri.location.y, 2));
-    	double distLeft = Math.sqrt(Math.pow(left.x - ri.location.x, 2) + Math.pow(left.y - ri.location.y, 2));
-    	double distBottom = Math.sqrt(Math.pow(bottom.x - ri.location.x, 2) + Math.pow(bottom.y - ri.location.y, 2));
-    	double badDistance = ri.type.sensorRadius;
-    	if (distTop > badDistance || distRight > badDistance || distLeft > badDistance || distBottom > badDistance) return false;
-    	else return true;
+    	budget.charge(5);
+    	return Geometry.circleInside(selfX(), selfY(), robotType.sensorRadius, center.x, center.y, radius);
     }
 
     /**
@@ -343,17 +398,9 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean isLocationOccupied(MapLocation loc) throws GameActionException {
-    	RobotMonitor.useBytecodes(20);
-    	if (Math.sqrt(Math.pow(loc.x - ri.location.x, 2) + Math.pow(loc.y - ri.location.y, 2)) > ri.type.sensorRadius) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Check if location occupied");
-    	else {
-    		for (RobotInfo r : map.robots) {
-    			if (Math.sqrt(Math.pow(r.location.x - loc.x, 2) + Math.pow(r.location.y - loc.y, 2)) <= r.getRadius()) return true;
-    		}
-    		for (TreeInfo t : map.trees) {
-    			if (Math.sqrt(Math.pow(t.location.x - loc.x, 2) + Math.pow(t.location.y - loc.y, 2)) <= t.getRadius()) return true;
-    		}
-    		return false;
-    	}
+    	budget.charge(20);
+    	if (!Geometry.pointWithin(selfX(), selfY(), robotType.sensorRadius, loc.x, loc.y)) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Check if location occupied");
+    	return bodyAt(map.robotGrid, loc.x, loc.y) >= 0 || bodyAt(map.treeGrid, loc.x, loc.y) >= 0;
     }
 
     /**
@@ -366,14 +413,9 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean isLocationOccupiedByTree(MapLocation loc) throws GameActionException {
-    	RobotMonitor.useBytecodes(20);
-    	if (Math.sqrt(Math.pow(loc.x - ri.location.x, 2) + Math.pow(loc.y - ri.location.y, 2)) > ri.type.sensorRadius) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Check if location occupied by tree");
-    	else {
-    		for (TreeInfo t : map.trees) {
-    			if (Math.sqrt(Math.pow(t.location.x - loc.x, 2) + Math.pow(t.location.y - loc.y, 2)) <= t.getRadius()) return true;
-    		}
-    		return false;
-    	}
+    	budget.charge(20);
+    	if (!Geometry.pointWithin(selfX(), selfY(), robotType.sensorRadius, loc.x, loc.y)) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Check if location occupied by tree");
+    	return bodyAt(map.treeGrid, loc.x, loc.y) >= 0;
     }
 
     /**
@@ -386,14 +428,9 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean isLocationOccupiedByRobot(MapLocation loc) throws GameActionException {
-    	RobotMonitor.useBytecodes(20);
-    	if (Math.sqrt(Math.pow(loc.x - ri.location.x, 2) + Math.pow(loc.y - ri.location.y, 2)) > ri.type.sensorRadius) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Check if location occupied by robot");
-    	else {
-    		for (RobotInfo r : map.robots) {
-    			if (Math.sqrt(Math.pow(r.location.x - loc.x, 2) + Math.pow(r.location.y - loc.y, 2)) <= r.getRadius()) return true;
-    		}
-    		return false;
-    	}
+    	budget.charge(20);
+    	if (!Geometry.pointWithin(selfX(), selfY(), robotType.sensorRadius, loc.x, loc.y)) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Check if location occupied by robot");
+    	return bodyAt(map.robotGrid, loc.x, loc.y) >= 0;
     }
 
     /**
@@ -407,26 +444,9 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean isCircleOccupied(MapLocation center, float radius) throws GameActionException {
-    	RobotMonitor.useBytecodes(20);
-    	MapLocation top = new MapLocation(center.x, center.y - radius);
-    	MapLocation right = new MapLocation(center.x + radius, center.y);
-    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-    	MapLocation left = new MapLocation(center.x - radius, center.y);
-    	double distTop = Math.sqrt(Math.pow(top.x - ri.location.x, 2) + Math.pow(top.y - ri.location.y, 2));
-    	double distRight = Math.sqrt(Math.pow(right.x - ri.location.x, 2) + Math.pow(right.y - ri.location.y, 2));
-    	double distLeft = Math.sqrt(Math.pow(left.x - ri.location.x, 2) + Math.pow(left.y - ri.location.y, 2));
-    	double distBottom = Math.sqrt(Math.pow(bottom.x - ri.location.x, 2) + Math.pow(bottom.y - ri.location.y, 2));
-    	double badDistance = ri.type.sensorRadius;
-    	if (distTop > badDistance || distRight > badDistance || distLeft > badDistance || distBottom > badDistance) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Check if circle occupied");
-    	else {
-    		for (RobotInfo r : map.robots) {
-    			if (Math.sqrt(Math.pow(r.location.x - center.x, 2) + Math.pow(r.location.y - center.y, 2)) <= radius) return true;
-    		}
-    		for (TreeInfo t : map.trees) {
-    			if (Math.sqrt(Math.pow(t.location.x - center.x, 2) + Math.pow(t.location.y - center.y, 2)) <= radius) return true;
-    		}
-    		return false;
-    	}
+    	budget.charge(20);
+    	if (!Geometry.circleInside(selfX(), selfY(), robotType.sensorRadius, center.x, center.y, radius)) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Check if circle occupied");
+    	return anyOverlapping(map.robotGrid, center.x, center.y, radius, -1) || anyOverlapping(map.treeGrid, center.x, center.y, radius, -1);
     }
 
     /**
@@ -441,26 +461,9 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean isCircleOccupiedExceptByThisRobot(MapLocation center, float radius) throws GameActionException {
-    	RobotMonitor.useBytecodes(20);
-    	MapLocation top = new MapLocation(center.x, center.y - radius);
-    	MapLocation right = new MapLocation(center.x + radius, center.y);
-    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-    	MapLocation left = new MapLocation(center.x - radius, center.y);
-    	double distTop = Math.sqrt(Math.pow(top.x - ri.location.x, 2) + Math.pow(top.y - ri.location.y, 2));
-    	double distRight = Math.sqrt(Math.pow(right.x - ri.location.x, 2) + Math.pow(right.y - ri.location.y, 2));
-    	double distLeft = Math.sqrt(Math.pow(left.x - ri.location.x, 2) + Math.pow(left.y - ri.location.y, 2));
-    	double distBottom = Math.sqrt(Math.pow(bottom.x - ri.location.x, 2) + Math.pow(bottom.y - ri.location.y, 2));
-    	double badDistance = ri.type.sensorRadius;
-    	if (distTop > badDistance || distRight > badDistance || distLeft > badDistance || distBottom > badDistance) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Check if circle occupied except by this robot");
-    	else {
-    		for (RobotInfo r : map.robots) {
-    			if (r != ri && Math.sqrt(Math.pow(r.location.x - center.x, 2) + Math.pow(r.location.y - center.y, 2)) <= radius) return true;
-    		}
-    		for (TreeInfo t : map.trees) {
-    			if (Math.sqrt(Math.pow(t.location.x - center.x, 2) + Math.pow(t.location.y - center.y, 2)) <= radius) return true;
-    		}
-    		return false;
-    	}
+    	budget.charge(20);
+    	if (!Geometry.circleInside(selfX(), selfY(), robotType.sensorRadius, center.x, center.y, radius)) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Check if circle occupied except by this robot");
+    	return anyOverlapping(map.robotGrid, center.x, center.y, radius, self) || anyOverlapping(map.treeGrid, center.x, center.y, radius, -1);
     }
 
     /**
@@ -474,14 +477,10 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     TreeInfo senseTreeAtLocation(MapLocation loc) throws GameActionException {
-    	RobotMonitor.useBytecodes(20);
-    	if (Math.sqrt(Math.pow(loc.x - ri.location.x, 2) + Math.pow(loc.y - ri.location.y, 2)) > ri.type.sensorRadius) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Find tree at location");
-    	else {
-    		for (TreeInfo t : map.trees) {
-    			if (Math.sqrt(Math.pow(t.location.x - loc.x, 2) + Math.pow(t.location.y - loc.y, 2)) <= t.getRadius()) return t;
-    		}
-    		return null;
-    	}
+    	budget.charge(20);
+    	if (!Geometry.pointWithin(selfX(), selfY(), robotType.sensorRadius, loc.x, loc.y)) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Find tree at location");
+    	int s = bodyAt(map.treeGrid, loc.x, loc.y);
+    	return s < 0 ? null : map.bodies.treeInfo(s);
     }
 
     /**
@@ -495,14 +494,10 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     RobotInfo senseRobotAtLocation(MapLocation loc) throws GameActionException {
-    	RobotMonitor.useBytecodes(20);
-    	if (Math.sqrt(Math.pow(loc.x - ri.location.x, 2) + Math.pow(loc.y - ri.location.y, 2)) > ri.type.sensorRadius) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Find robot at location");
-    	else {
-    		for (RobotInfo r : map.robots) {
-    			if (Math.sqrt(Math.pow(r.location.x - loc.x, 2) + Math.pow(r.location.y - loc.y, 2)) <= r.getRadius()) return r;
-    		}
-    		return null;
-    	}
+    	budget.charge(20);
+    	if (!Geometry.pointWithin(selfX(), selfY(), robotType.sensorRadius, loc.x, loc.y)) throw new GameActionException(GameActionExceptionType.OUT_OF_RANGE, "Find robot at location");
+    	int s = bodyAt(map.robotGrid, loc.x, loc.y);
+    	return s < 0 ? null : map.bodies.robotInfo(s);
     }
 
     /**
@@ -515,30 +510,9 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean canSenseTree(int id) {
-    	RobotMonitor.useBytecodes(5);
-    	MapLocation center = new MapLocation(0, 0);
-    	float radius = 0;
-    	boolean found = false;
-    	for (TreeInfo t : map.trees) {
-    		if (t.ID == id) {
-    			found = true;
-    			center = t.location;
-    			radius = t.radius;
-    			break;
-    		}
-    	}
-    	if (!found) return false;
-    	MapLocation top = new MapLocation(center.x, center.y - radius);
-    	MapLocation right = new MapLocation(center.x + radius, center.y);
-    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-    	MapLocation left = new MapLocation(center.x - radius, center.y);
-    	double distTop = Math.sqrt(Math.pow(top.x - ri.location.x, 2) + Math.pow(top.y - ri.location.y, 2));
-    	double distRight = Math.sqrt(Math.pow(right.x - ri.location.x, 2) + Math.pow(right.y - ri.location.y, 2));
-    	double distLeft = Math.sqrt(Math.pow(left.x - ri.location.x, 2) + Math.pow(left.y - ri.location.y, 2));
-    	double distBottom = Math.sqrt(Math.pow(bottom.x - ri.location.x, 2) + Math.pow(bottom.y - ri.location.y, 2));
-    	double badDistance = ri.type.sensorRadius;
-    	if (distTop > badDistance && distRight > badDistance && distLeft > badDistance && distBottom > badDistance) return false;
-    	else return true;
+    	budget.charge(5);
+    	int s = map.bodies.treeSlot(id);
+    	return s >= 0 && map.bodies.overlaps(s, selfX(), selfY(), robotType.sensorRadius);
     }
 
     /**
@@ -551,30 +525,9 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean canSenseRobot(int id) {
-    	RobotMonitor.useBytecodes(5);
-    	MapLocation center = new MapLocation(0, 0);
-    	float radius = 0;
-    	boolean found = false;
-    	for (RobotInfo r : map.robots) {
-    		if (r.ID == id) {
-    			found = true;
-    			center = r.location;
-    			radius = r.getRadius();
-    			break;
-    		}
-    	}
-    	if (!found) return false;
-    	MapLocation top = new MapLocation(center.x, center.y - radius);
-    	MapLocation right = new MapLocation(center.x + radius, center.y);
-    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-    	MapLocation left = new MapLocation(center.x - radius, center.y);
-    	double distTop = Math.sqrt(Math.pow(top.x - ri.location.x, 2) + Math.pow(top.y - ri.location.y, 2));
-    	double distRight = Math.sqrt(Math.pow(right.x - ri.location.x, 2) + Math.pow(right.y - ri.location.y, 2));
-    	double distLeft = Math.sqrt(Math.pow(left.x - ri.location.x, 2) + Math.pow(left.y - ri.location.y, 2));
-    	double distBottom = Math.sqrt(Math.pow(bottom.x - ri.location.x, 2) + Math.pow(bottom.y - ri.location.y, 2));
-    	double badDistance = ri.type.sensorRadius;
-    	if (distTop > badDistance && distRight > badDistance && distLeft > badDistance && distBottom > badDistance) return false;
-    	else return true;
+    	budget.charge(5);
+    	int s = map.bodies.robotSlot(id);
+    	return s >= 0 && map.bodies.overlaps(s, selfX(), selfY(), robotType.sensorRadius);
     }
 
     /**
@@ -587,19 +540,10 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean canSenseBullet(int id) {
-    	RobotMonitor.useBytecodes(5);
-    	MapLocation center = new MapLocation(0, 0);
-    	boolean found = false;
-    	for (BulletInfo b : map.bullets) {
-    		if (b.ID == id) {
-    			found = true;
-    			center = b.location;
-    			break;
-    		}
-    	}
-    	if (!found) return false;
-    	double dist = Math.sqrt(Math.pow(center.x - ri.location.x, 2) + Math.pow(center.y - ri.location.y, 2));
-    	if (dist > ri.type.bulletSightRadius) return false;
+    	budget.charge(5);
+    	int index = map.bullets.indexOf(id);
+    	if (index < 0) return false;
+    	if (!Geometry.pointWithin(selfX(), selfY(), robotType.bulletSightRadius, map.bullets.x[index], map.bullets.y[index])) return false;
     	else return true;
     }
 
@@ -614,32 +558,10 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     TreeInfo senseTree(int id) throws GameActionException {
-    	RobotMonitor.useBytecodes(25);
-    	MapLocation center = new MapLocation(0, 0);
-    	float radius = 0;
-    	TreeInfo ret = null;
-    	boolean found = false;
-    	for (TreeInfo t : map.trees) {
-    		if (t.ID == id) {
-    			found = true;
-    			center = t.location;
-    			radius = t.radius;
-    			ret = t;
-    			break;
-    		}
-    	}
-    	if (!found) throw new GameActionException(GameActionExceptionType.CANT_DO_THAT, "Get info on tree by id");
-    	MapLocation top = new MapLocation(center.x, center.y - radius);
-    	MapLocation right = new MapLocation(center.x + radius, center.y);
-    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-    	MapLocation left = new MapLocation(center.x - radius, center.y);
-    	double distTop = Math.sqrt(Math.pow(top.x - ri.location.x, 2) + Math.pow(top.y - ri.location.y, 2));
-    	double distRight = Math.sqrt(Math.pow(right.x - ri.location.x, 2) + Math.pow(right.y - ri.location.y, 2));
-    	double distLeft = Math.sqrt(Math.pow(left.x - ri.location.x, 2) + Math.pow(left.y - ri.location.y, 2));
-    	double distBottom = Math.sqrt(Math.pow(bottom.x - ri.location.x, 2) + Math.pow(bottom.y - ri.location.y, 2));
-    	double badDistance = ri.type.sensorRadius;
-    	if (distTop > badDistance && distRight > badDistance && distLeft > badDistance && distBottom > badDistance) throw new GameActionException(GameActionExceptionType.CANT_DO_THAT, "Get info on tree by id");
-    	else return ret;
+    	budget.charge(25);
+    	int s = map.bodies.treeSlot(id);
+    	if (s >= 0 && map.bodies.overlaps(s, selfX(), selfY(), robotType.sensorRadius)) return map.bodies.treeInfo(s);
+    	throw new GameActionException(GameActionExceptionType.CANT_DO_THAT, "Get info on tree by id");
     }
 
     /**
@@ -653,32 +575,10 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     RobotInfo senseRobot(int id) throws GameActionException {
-    	RobotMonitor.useBytecodes(25);
-    	MapLocation center = new MapLocation(0, 0);
-    	float radius = 0;
-    	RobotInfo ret = null;
-    	boolean found = false;
-    	for (RobotInfo r : map.robots) {
-    		if (r.ID == id) {
-    			found = true;
-    			center = r.location;
-    			radius = r.getRadius();
-    			ret = r;
-    			break;
-    		}
-    	}
-    	if (!found) throw new GameActionException(GameActionExceptionType.CANT_DO_THAT, "Get info on robot by id");
-    	MapLocation top = new MapLocation(center.x, center.y - radius);
-    	MapLocation right = new MapLocation(center.x + radius, center.y);
-    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-    	MapLocation left = new MapLocation(center.x - radius, center.y);
-    	double distTop = Math.sqrt(Math.pow(top.x - ri.location.x, 2) + Math.pow(top.y - ri.location.y, 2));
-    	double distRight = Math.sqrt(Math.pow(right.x - ri.location.x, 2) + Math.pow(right.y - ri.location.y, 2));
-    	double distLeft = Math.sqrt(Math.pow(left.x - ri.location.x, 2) + Math.pow(left.y - ri.location.y, 2));
-    	double distBottom = Math.sqrt(Math.pow(bottom.x - ri.location.x, 2) + Math.pow(bottom.y - ri.location.y, 2));
-    	double badDistance = ri.type.sensorRadius;
-    	if (distTop > badDistance && distRight > badDistance && distLeft > badDistance && distBottom > badDistance) throw new GameActionException(GameActionExceptionType.CANT_DO_THAT, "Get info on robot by id");
-    	else return ret;
+    	budget.charge(25);
+    	int s = map.bodies.robotSlot(id);
+    	if (s >= 0 && map.bodies.overlaps(s, selfX(), selfY(), robotType.sensorRadius)) return map.bodies.robotInfo(s);
+    	throw new GameActionException(GameActionExceptionType.CANT_DO_THAT, "Get info on robot by id");
     }
 
     /**
@@ -692,21 +592,11 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     BulletInfo senseBullet(int id) throws GameActionException {
-    	RobotMonitor.useBytecodes(25);
-    	MapLocation center = new MapLocation(0, 0);
-    	boolean found = false;
-    	BulletInfo ret = null;
-    	for (BulletInfo b : map.bullets) {
-    		if (b.ID == id) {
-    			found = true;
-    			center = b.location;
-    			break;
-    		}
-    	}
-    	if (!found) throw new GameActionException(GameActionExceptionType.CANT_DO_THAT, "Get info on bullet by id");
-    	double dist = Math.sqrt(Math.pow(center.x - ri.location.x, 2) + Math.pow(center.y - ri.location.y, 2));
-    	if (dist > ri.type.bulletSightRadius) throw new GameActionException(GameActionExceptionType.CANT_DO_THAT, "Get info on bullet by id");
-    	else return ret;
+    	budget.charge(25);
+    	int index = map.bullets.indexOf(id);
+    	if (index < 0) throw new GameActionException(GameActionExceptionType.CANT_DO_THAT, "Get info on bullet by id");
+    	if (!Geometry.pointWithin(selfX(), selfY(), robotType.bulletSightRadius, map.bullets.x[index], map.bullets.y[index])) throw new GameActionException(GameActionExceptionType.CANT_DO_THAT, "Get info on bullet by id");
+    	else return map.bullets.get(index);
     }
 
     /**
@@ -718,28 +608,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     RobotInfo[] senseNearbyRobots() {
-    	LinkedList<RobotInfo> l = new LinkedList<>();
-    	RobotMonitor.useBytecodes(100);
-    	for (RobotInfo r : map.robots) {
-    		MapLocation center = r.location;
-    		float radius = r.getRadius();
-	    	MapLocation top = new MapLocation(center.x, center.y - radius);
-	    	MapLocation right = new MapLocation(center.x + radius, center.y);
-	    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-	    	MapLocation left = new MapLocation(center.x - radius, center.y);
-	    	double distTop = Math.sqrt(Math.pow(top.x - ri.location.x, 2) + Math.pow(top.y - ri.location.y, 2));
-	    	double distRight = Math.sqrt(Math.pow(right.x - ri.location.x, 2) + Math.pow(right.y - ri.location.y, 2));
-	    	double distLeft = Math.sqrt(Math.pow(left.x - ri.location.x, 2) + Math.pow(left.y - ri.location.y, 2));
-	    	double distBottom = Math.sqrt(Math.pow(bottom.x - ri.location.x, 2) + Math.pow(bottom.y - ri.location.y, 2));
-	    	double badDistance = ri.type.sensorRadius;
-	    	if (!(distTop > badDistance && distRight > badDistance && distLeft > badDistance && distBottom > badDistance)) l.add(r);
-    	}
-    	RobotInfo[] ret = new RobotInfo[l.size()];
-    	int index = 0;
-    	for (RobotInfo r : l) {
-    		ret[index++] = r;
-    	}
-    	return ret;
+    	budget.charge(100);
+    	return collectRobots(selfX(), selfY(), robotType.sensorRadius, null);
     }
 
     /**
@@ -753,29 +623,9 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     RobotInfo[] senseNearbyRobots(float rad) {
-    	LinkedList<RobotInfo> l = new LinkedList<>();
-    	if (rad < 0 || rad > ri.type.sensorRadius) rad = ri.type.sensorRadius;
-    	RobotMonitor.useBytecodes(100);
-    	for (RobotInfo r : map.robots) {
-    		MapLocation center = r.location;
-    		float radius = r.getRadius();
-	    	MapLocation top = new MapLocation(center.x, center.y - radius);
-	    	MapLocation right = new MapLocation(center.x + radius, center.y);
-	    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-	    	MapLocation left = new MapLocation(center.x - radius, center.y);
-	    	double distTop = Math.sqrt(Math.pow(top.x - ri.location.x, 2) + Math.pow(top.y - ri.location.y, 2));
-	    	double distRight = Math.sqrt(Math.pow(right.x - ri.location.x, 2) + Math.pow(right.y - ri.location.y, 2));
-	    	double distLeft = Math.sqrt(Math.pow(left.x - ri.location.x, 2) + Math.pow(left.y - ri.location.y, 2));
-	    	double distBottom = Math.sqrt(Math.pow(bottom.x - ri.location.x, 2) + Math.pow(bottom.y - ri.location.y, 2));
-	    	double badDistance = rad;
-	    	if (!(distTop > badDistance && distRight > badDistance && distLeft > badDistance && distBottom > badDistance)) l.add(r);
-    	}
-    	RobotInfo[] ret = new RobotInfo[l.size()];
-    	int index = 0;
-    	for (RobotInfo r : l) {
-    		ret[index++] = r;
-    	}
-    	return ret;
+    	if (rad < 0 || rad > robotType.sensorRadius) rad = robotType.sensorRadius;
+    	budget.charge(100);
+    	return collectRobots(selfX(), selfY(), rad, null);
     }
 
     /**
@@ -791,29 +641,9 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     RobotInfo[] senseNearbyRobots(float rad, Team team) {
-    	LinkedList<RobotInfo> l = new LinkedList<>();
-    	if (rad < 0 || rad > ri.type.sensorRadius) rad = ri.type.sensorRadius;
-    	RobotMonitor.useBytecodes(100);
-    	for (RobotInfo r : map.robots) {
-    		MapLocation center = r.location;
-    		float radius = r.getRadius();
-	    	MapLocation top = new MapLocation(center.x, center.y - radius);
-	    	MapLocation right = new MapLocation(center.x + radius, center.y);
-	    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-	    	MapLocation left = new MapLocation(center.x - radius, center.y);
-	    	double distTop = Math.sqrt(Math.pow(top.x - ri.location.x, 2) + Math.pow(top.y - ri.location.y, 2));
-	    	double distRight = Math.sqrt(Math.pow(right.x - ri.location.x, 2) + Math.pow(right.y - ri.location.y, 2));
-	    	double distLeft = Math.sqrt(Math.pow(left.x - ri.location.x, 2) + Math.pow(left.y - ri.location.y, 2));
-	    	double distBottom = Math.sqrt(Math.pow(bottom.x - ri.location.x, 2) + Math.pow(bottom.y - ri.location.y, 2));
-	    	double badDistance = rad;
-	    	if (!(distTop > badDistance && distRight > badDistance && distLeft > badDistance && distBottom > badDistance) && r.team.equals(team)) l.add(r);
-    	}
-    	RobotInfo[] ret = new RobotInfo[l.size()];
-    	int index = 0;
-    	for (RobotInfo r : l) {
-    		ret[index++] = r;
-    	}
-    	return ret;
+    	if (rad < 0 || rad > robotType.sensorRadius) rad = robotType.sensorRadius;
+    	budget.charge(100);
+    	return collectRobots(selfX(), selfY(), rad, team);
     }
 
     /**
@@ -830,29 +660,9 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     RobotInfo[] senseNearbyRobots(MapLocation cen, float rad, Team team) {
-    	LinkedList<RobotInfo> l = new LinkedList<>();
-    	if (rad < 0 || rad > ri.type.sensorRadius) rad = ri.type.sensorRadius;
-    	RobotMonitor.useBytecodes(100);
-    	for (RobotInfo r : map.robots) {
-    		MapLocation center = r.location;
-    		float radius = r.getRadius();
-	    	MapLocation top = new MapLocation(center.x, center.y - radius);
-	    	MapLocation right = new MapLocation(center.x + radius, center.y);
-	    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-	    	MapLocation left = new MapLocation(center.x - radius, center.y);
-	    	double distTop = Math.sqrt(Math.pow(top.x - cen.x, 2) + Math.pow(top.y - cen.y, 2));
-	    	double distRight = Math.sqrt(Math.pow(right.x - cen.x, 2) + Math.pow(right.y - cen.y, 2));
-	    	double distLeft = Math.sqrt(Math.pow(left.x - cen.x, 2) + Math.pow(left.y - cen.y, 2));
-	    	double distBottom = Math.sqrt(Math.pow(bottom.x - cen.x, 2) + Math.pow(bottom.y - cen.y, 2));
-	    	double badDistance = rad;
-	    	if (!(distTop > badDistance && distRight > badDistance && distLeft > badDistance && distBottom > badDistance) && r.team.equals(team)) l.add(r);
-    	}
-    	RobotInfo[] ret = new RobotInfo[l.size()];
-    	int index = 0;
-    	for (RobotInfo r : l) {
-    		ret[index++] = r;
-    	}
-    	return ret;
+    	if (rad < 0 || rad > robotType.sensorRadius) rad = robotType.sensorRadius;
+    	budget.charge(100);
+    	return collectRobots(cen.x, cen.y, rad, team);
     }
 
     /**
@@ -864,28 +674,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     TreeInfo[] senseNearbyTrees() {
-    	LinkedList<TreeInfo> l = new LinkedList<>();
-    	RobotMonitor.useBytecodes(100);
-    	for (TreeInfo t : map.trees) {
-    		MapLocation center = t.location;
-    		float radius = t.getRadius();
-	    	MapLocation top = new MapLocation(center.x, center.y - radius);
-	    	MapLocation right = new MapLocation(center.x + radius, center.y);
-	    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-	    	MapLocation left = new MapLocation(center.x - radius, center.y);
-	    	double distTop = Math.sqrt(Math.pow(top.x - ri.location.x, 2) + Math.pow(top.y - ri.location.y, 2));
-	    	double distRight = Math.sqrt(Math.pow(right.x - ri.location.x, 2) + Math.pow(right.y - ri.location.y, 2));
-	    	double distLeft = Math.sqrt(Math.pow(left.x - ri.location.x, 2) + Math.pow(left.y - ri.location.y, 2));
-	    	double distBottom = Math.sqrt(Math.pow(bottom.x - ri.location.x, 2) + Math.pow(bottom.y - ri.location.y, 2));
-	    	double badDistance = ri.type.sensorRadius;
-	    	if (!(distTop > badDistance && distRight > badDistance && distLeft > badDistance && distBottom > badDistance)) l.add(t);
-    	}
-    	TreeInfo[] ret = new TreeInfo[l.size()];
-    	int index = 0;
-    	for (TreeInfo t : l) {
-    		ret[index++] = t;
-    	}
-    	return ret;
+    	budget.charge(100);
+    	return collectTrees(selfX(), selfY(), robotType.sensorRadius, null);
     }
 
     /**
@@ -899,29 +689,9 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     TreeInfo[] senseNearbyTrees(float rad) {
-    	LinkedList<TreeInfo> l = new LinkedList<>();
-    	if (rad < 0 || rad > ri.type.sensorRadius) rad = ri.type.sensorRadius;
-    	RobotMonitor.useBytecodes(100);
-    	for (TreeInfo t : map.trees) {
-    		MapLocation center = t.location;
-    		float radius = t.getRadius();
-	    	MapLocation top = new MapLocation(center.x, center.y - radius);
-	    	MapLocation right = new MapLocation(center.x + radius, center.y);
-	    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-	    	MapLocation left = new MapLocation(center.x - radius, center.y);
-	    	double distTop = Math.sqrt(Math.pow(top.x - ri.location.x, 2) + Math.pow(top.y - ri.location.y, 2));
-	    	double distRight = Math.sqrt(Math.pow(right.x - ri.location.x, 2) + Math.pow(right.y - ri.location.y, 2));
-	    	double distLeft = Math.sqrt(Math.pow(left.x - ri.location.x, 2) + Math.pow(left.y - ri.location.y, 2));
-	    	double distBottom = Math.sqrt(Math.pow(bottom.x - ri.location.x, 2) + Math.pow(bottom.y - ri.location.y, 2));
-	    	double badDistance = rad;
-	    	if (!(distTop > badDistance && distRight > badDistance && distLeft > badDistance && distBottom > badDistance)) l.add(t);
-    	}
-    	TreeInfo[] ret = new TreeInfo[l.size()];
-    	int index = 0;
-    	for (TreeInfo t : l) {
-    		ret[index++] = t;
-    	}
-    	return ret;
+    	if (rad < 0 || rad > robotType.sensorRadius) rad = robotType.sensorRadius;
+    	budget.charge(100);
+    	return collectTrees(selfX(), selfY(), rad, null);
     }
 
     /**
@@ -937,29 +707,9 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     TreeInfo[] senseNearbyTrees(float rad, Team team) {
-    	LinkedList<TreeInfo> l = new LinkedList<>();
-    	if (rad < 0 || rad > ri.type.sensorRadius) rad = ri.type.sensorRadius;
-    	RobotMonitor.useBytecodes(100);
-    	for (TreeInfo t : map.trees) {
-    		MapLocation center = t.location;
-    		float radius = t.getRadius();
-	    	MapLocation top = new MapLocation(center.x, center.y - radius);
-	    	MapLocation right = new MapLocation(center.x + radius, center.y);
-	    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-	    	MapLocation left = new MapLocation(center.x - radius, center.y);
-	    	double distTop = Math.sqrt(Math.pow(top.x - ri.location.x, 2) + Math.pow(top.y - ri.location.y, 2));
-	    	double distRight = Math.sqrt(Math.pow(right.x - ri.location.x, 2) + Math.pow(right.y - ri.location.y, 2));
-	    	double distLeft = Math.sqrt(Math.pow(left.x - ri.location.x, 2) + Math.pow(left.y - ri.location.y, 2));
-	    	double distBottom = Math.sqrt(Math.pow(bottom.x - ri.location.x, 2) + Math.pow(bottom.y - ri.location.y, 2));
-	    	double badDistance = rad;
-	    	if (!(distTop > badDistance && distRight > badDistance && distLeft > badDistance && distBottom > badDistance) && t.team.equals(team)) l.add(t);
-    	}
-    	TreeInfo[] ret = new TreeInfo[l.size()];
-    	int index = 0;
-    	for (TreeInfo t : l) {
-    		ret[index++] = t;
-    	}
-    	return ret;
+    	if (rad < 0 || rad > robotType.sensorRadius) rad = robotType.sensorRadius;
+    	budget.charge(100);
+    	return collectTrees(selfX(), selfY(), rad, team);
     }
 
     /**
@@ -976,29 +726,9 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     TreeInfo[] senseNearbyTrees(MapLocation cen, float rad, Team team) {
-    	LinkedList<TreeInfo> l = new LinkedList<>();
-    	if (rad < 0 || rad > ri.type.sensorRadius) rad = ri.type.sensorRadius;
-    	RobotMonitor.useBytecodes(100);
-    	for (TreeInfo t : map.trees) {
-    		MapLocation center = t.location;
-    		float radius = t.getRadius();
-	    	MapLocation top = new MapLocation(center.x, center.y - radius);
-	    	MapLocation right = new MapLocation(center.x + radius, center.y);
-	    	MapLocation bottom = new MapLocation(center.x, center.y + radius);
-	    	MapLocation left = new MapLocation(center.x - radius, center.y);
-	    	double distTop = Math.sqrt(Math.pow(top.x - cen.x, 2) + Math.pow(top.y - cen.y, 2));
-	    	double distRight = Math.sqrt(Math.pow(right.x - cen.x, 2) + Math.pow(right.y - cen.y, 2));
-	    	double distLeft = Math.sqrt(Math.pow(left.x - cen.x, 2) + Math.pow(left.y - cen.y, 2));
-	    	double distBottom = Math.sqrt(Math.pow(bottom.x - cen.x, 2) + Math.pow(bottom.y - cen.y, 2));
-	    	double badDistance = rad;
-	    	if (!(distTop > badDistance && distRight > badDistance && distLeft > badDistance && distBottom > badDistance) && t.team.equals(team)) l.add(t);
-    	}
-    	TreeInfo[] ret = new TreeInfo[l.size()];
-    	int index = 0;
-    	for (TreeInfo t : l) {
-    		ret[index++] = t;
-    	}
-    	return ret;
+    	if (rad < 0 || rad > robotType.sensorRadius) rad = robotType.sensorRadius;
+    	budget.charge(100);
+    	return collectTrees(cen.x, cen.y, rad, team);
     }
 
     /**
@@ -1010,18 +740,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     BulletInfo[] senseNearbyBullets() {
-    	LinkedList<BulletInfo> l = new LinkedList<>();
-    	RobotMonitor.useBytecodes(50);
-    	for (BulletInfo b : map.bullets) {
-    		double dist = Math.sqrt(Math.pow(b.location.x - ri.location.x, 2) + Math.pow(b.location.y - ri.location.y, 2));
-        	if (!(dist > ri.type.bulletSightRadius)) l.add(b);
-    	}
-    	BulletInfo[] ret = new BulletInfo[l.size()];
-    	int index = 0;
-    	for (BulletInfo b : l) {
-    		ret[index++] = b;
-    	}
-    	return ret;
+    	budget.charge(50);
+    	return collectBullets(selfX(), selfY(), robotType.bulletSightRadius);
     }
 
     /**
@@ -1035,19 +755,9 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     BulletInfo[] senseNearbyBullets(float rad) {
-    	LinkedList<BulletInfo> l = new LinkedList<>();
-    	if (rad < 0 || rad > ri.type.bulletSightRadius) rad = ri.type.bulletSightRadius;
-    	RobotMonitor.useBytecodes(50);
-    	for (BulletInfo b : map.bullets) {
-    		double dist = Math.sqrt(Math.pow(b.location.x - ri.location.x, 2) + Math.pow(b.location.y - ri.location.y, 2));
-        	if (!(dist > rad)) l.add(b);
-    	}
-    	BulletInfo[] ret = new BulletInfo[l.size()];
-    	int index = 0;
-    	for (BulletInfo b : l) {
-    		ret[index++] = b;
-    	}
-    	return ret;
+    	if (rad < 0 || rad > robotType.bulletSightRadius) rad = robotType.bulletSightRadius;
+    	budget.charge(50);
+    	return collectBullets(selfX(), selfY(), rad);
     }
 
     /**
@@ -1062,17 +772,202 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     BulletInfo[] senseNearbyBullets(MapLocation cen, float rad) {
-    	LinkedList<BulletInfo> l = new LinkedList<>();
-    	if (rad < 0 || rad > ri.type.bulletSightRadius) rad = ri.type.bulletSightRadius;
-    	RobotMonitor.useBytecodes(50);
-    	for (BulletInfo b : map.bullets) {
-    		double dist = Math.sqrt(Math.pow(b.location.x - cen.x, 2) + Math.pow(b.location.y - cen.y, 2));
-        	if (!(dist > rad)) l.add(b);
+    	if (rad < 0 || rad > robotType.bulletSightRadius) rad = robotType.bulletSightRadius;
+    	budget.charge(50);
+    	return collectBullets(cen.x, cen.y, rad);
+    }
+
+    /**
+     * Writes this robot's observation, laid out as the given Observation
+     * describes, into out[offset, offset + layout.size()). The slots hold the
+     * nearest of the robots, trees and bullets senseNearbyRobots(),
+     * senseNearbyTrees() and senseNearbyBullets() would return, nearest
+     * center first, and unused slots are zeroed. Nothing is allocated unless
+     * the layout has more slots than any this robot used before.
+     *
+     * @param layout the number of slots of each kind
+     * @param out the array to write into
+     * @param offset the index in out of the first feature
+     *
+     * @battlecode.doc.costlymethod
+     */
+    void observe(Observation layout, float[] out, int offset) {
+    	budget.charge(250);
+    	Arrays.fill(out, offset, offset + layout.size(), 0);
+    	EntityStore b = map.bodies;
+    	float x = selfX(), y = selfY();
+    	MapLocation origin = map.getOrigin();
+    	out[offset + Observation.SELF_HEALTH] = b.health[self] / robotType.maxHealth;
+    	out[offset + Observation.SELF_BULLETS] = (float)(map.getBullets(robotTeam) / 1000);
+    	out[offset + Observation.SELF_ROUND] = (float)map.getRoundsPassed() / map.getRounds();
+    	out[offset + Observation.SELF_X] = (x - origin.x) / map.getWidth();
+    	out[offset + Observation.SELF_Y] = (y - origin.y) / map.getHeight();
+    	float sensor = robotType.sensorRadius;
+    	collect(map.robotGrid, x, y, sensor, null);
+    	int count = nearest(b.x, b.y, x, y, layout.getRobots());
+    	for (int k = 0; k < count; k++) {
+    		int s = nearestSlots[k], o = offset + layout.robotOffset(k);
+    		RobotType type = b.type(s);
+    		out[o + Observation.PRESENT] = 1;
+    		out[o + Observation.DX] = (b.x[s] - x) / sensor;
+    		out[o + Observation.DY] = (b.y[s] - y) / sensor;
+    		out[o + Observation.ROBOT_HEALTH] = b.health[s] / b.maxHealth(s);
+    		out[o + Observation.ROBOT_ENEMY] = b.team(s) == robotTeam ? 0 : 1;
+    		out[o + Observation.ROBOT_TYPE] = (float)type.ordinal() / LAST_TYPE;
     	}
-    	BulletInfo[] ret = new BulletInfo[l.size()];
-    	int index = 0;
-    	for (BulletInfo b : l) {
-    		ret[index++] = b;
+    	collect(map.treeGrid, x, y, sensor, null);
+    	count = nearest(b.x, b.y, x, y, layout.getTrees());
+    	for (int k = 0; k < count; k++) {
+    		int s = nearestSlots[k], o = offset + layout.treeOffset(k);
+    		Team team = b.team(s);
+    		out[o + Observation.PRESENT] = 1;
+    		out[o + Observation.DX] = (b.x[s] - x) / sensor;
+    		out[o + Observation.DY] = (b.y[s] - y) / sensor;
+    		out[o + Observation.TREE_RADIUS] = b.radius[s] / sensor;
+    		out[o + Observation.TREE_HEALTH] = b.health[s] / b.maxHealth(s);
+    		out[o + Observation.TREE_OWNER] = team == robotTeam ? 1 : team == Team.NEUTRAL ? 0 : -1;
+    	}
+    	BulletPool bullets = map.bullets;
+    	float sight = robotType.bulletSightRadius;
+    	nearby.clear();
+    	map.bulletGrid.query(x, y, sight, nearby);
+    	count = nearest(bullets.x, bullets.y, x, y, layout.getBullets());
+    	for (int k = 0; k < count; k++) {
+    		int i = nearestSlots[k], o = offset + layout.bulletOffset(k);
+    		out[o + Observation.PRESENT] = 1;
+    		out[o + Observation.DX] = (bullets.x[i] - x) / sight;
+    		out[o + Observation.DY] = (bullets.y[i] - y) / sight;
+    		out[o + Observation.BULLET_VX] = bullets.dx[i] / sight;
+    		out[o + Observation.BULLET_VY] = bullets.dy[i] / sight;
+    		out[o + Observation.BULLET_DAMAGE] = bullets.damage[i];
+    	}
+    }
+
+    /**
+     * Writes this robot's observation at the buffer's position, as
+     * observe(Observation, float[], int) does, and advances the position
+     * past it.
+     *
+     * @param layout the number of slots of each kind
+     * @param out the buffer to write into
+     *
+     * @battlecode.doc.costlymethod
+     */
+    void observe(Observation layout, FloatBuffer out) {
+    	int size = layout.size();
+    	if (observation.length < size) observation = new float[size];
+    	observe(layout, observation, 0);
+    	out.put(observation, 0, size);
+    }
+
+    /**
+     * Returns every robot other than this one with any part within range of
+     * (x, y), only those of the given team unless it is null. Only the
+     * returned array and its RobotInfo views are allocated.
+     */
+    private RobotInfo[] collectRobots(float x, float y, float range, Team team) {
+    	int count = collect(map.robotGrid, x, y, range, team);
+    	RobotInfo[] ret = new RobotInfo[count];
+    	for (int i = 0; i < count; i++) {
+    		ret[i] = map.bodies.robotInfo(nearby.get(i));
+    	}
+    	return ret;
+    }
+
+    /**
+     * Returns every tree with any part within range of (x, y), only those of
+     * the given team unless it is null.
+     */
+    private TreeInfo[] collectTrees(float x, float y, float range, Team team) {
+    	int count = collect(map.treeGrid, x, y, range, team);
+    	TreeInfo[] ret = new TreeInfo[count];
+    	for (int i = 0; i < count; i++) {
+    		ret[i] = map.bodies.treeInfo(nearby.get(i));
+    	}
+    	return ret;
+    }
+
+    /**
+     * Leaves in the first entries of the scratch list the slots, other than
+     * this robot's, of bodies in the given grid that overlap the circle, and
+     * returns how many there are.
+     */
+    private int collect(SpatialGrid grid, float x, float y, float range, Team team) {
+    	EntityStore b = map.bodies;
+    	nearby.clear();
+    	grid.query(x, y, range, nearby);
+    	int count = 0;
+    	for (int i = 0, n = nearby.size(); i < n; i++) {
+    		int s = nearby.get(i);
+    		if (s != self && (team == null || b.team[s] == team.ordinal()) && b.overlaps(s, x, y, range)) nearby.set(count++, s);
+    	}
+    	nearby.truncate(count);
+    	return count;
+    }
+
+    /**
+     * Leaves in the first entries of nearestSlots the up to k entries of the
+     * scratch list whose points in xs and ys are closest to (x, y), nearest
+     * first and ties in list order, and returns how many there are.
+     */
+    private int nearest(float[] xs, float[] ys, float x, float y, int k) {
+    	if (nearestSlots.length < k) {
+    		nearestSlots = new int[k];
+    		nearestDistances = new float[k];
+    	}
+    	int count = 0;
+    	for (int i = 0, n = nearby.size(); i < n; i++) {
+    		int s = nearby.get(i);
+    		float dx = xs[s] - x, dy = ys[s] - y;
+    		float d = dx * dx + dy * dy;
+    		if (count == k && (k == 0 || d >= nearestDistances[k - 1])) continue;
+    		int j = count < k ? count++ : k - 1;
+    		for (; j > 0 && nearestDistances[j - 1] > d; j--) {
+    			nearestSlots[j] = nearestSlots[j - 1];
+    			nearestDistances[j] = nearestDistances[j - 1];
+    		}
+    		nearestSlots[j] = s;
+    		nearestDistances[j] = d;
+    	}
+    	return count;
+    }
+
+    /**
+     * Returns the slot of a body in the given grid that contains (x, y), or -1.
+     */
+    private int bodyAt(SpatialGrid grid, float x, float y) {
+    	nearby.clear();
+    	grid.query(x, y, 0, nearby);
+    	for (int i = 0, n = nearby.size(); i < n; i++) {
+    		if (map.bodies.contains(nearby.get(i), x, y)) return nearby.get(i);
+    	}
+    	return -1;
+    }
+
+    /**
+     * Returns whether any body in the given grid, other than the one in slot
+     * skip, overlaps the circle at (x, y).
+     */
+    private boolean anyOverlapping(SpatialGrid grid, float x, float y, float radius, int skip) {
+    	nearby.clear();
+    	grid.query(x, y, radius, nearby);
+    	for (int i = 0, n = nearby.size(); i < n; i++) {
+    		int s = nearby.get(i);
+    		if (s != skip && map.bodies.overlaps(s, x, y, radius)) return true;
+    	}
+    	return false;
+    }
+
+    /**
+     * Builds BulletInfo objects for every bullet within range of the given
+     * point. These are the only BulletInfo objects created for live bullets.
+     */
+    private BulletInfo[] collectBullets(float x, float y, float range) {
+    	nearby.clear();
+    	map.bulletGrid.query(x, y, range, nearby);
+    	BulletInfo[] ret = new BulletInfo[nearby.size()];
+    	for (int i = 0; i < ret.length; i++) {
+    		ret[i] = map.bullets.get(nearby.get(i));
     	}
     	return ret;
     }
@@ -1087,11 +982,16 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     MapLocation[] senseBroadcastingRobotLocations() {
-    	RobotMonitor.useBytecodes(100);
-    	MapLocation[] ret = new MapLocation[map.broadcasters.size()];
+    	budget.charge(100);
+    	EntityStore b = map.bodies;
+    	int count = 0;
+    	for (int s = 0, end = b.end(); s < end; s++) {
+    		if (b.broadcasting[s]) count++;
+    	}
+    	MapLocation[] ret = new MapLocation[count];
     	int index = 0;
-    	for (RobotInfo r : map.broadcasters) {
-    		ret[index++] = r.location;
+    	for (int s = 0, end = b.end(); s < end; s++) {
+    		if (b.broadcasting[s]) ret[index++] = new MapLocation(b.x[s], b.y[s]);
     	}
     	return ret;
     }
@@ -1099,6 +999,34 @@ public strictfp class RobotController {
     // ***********************************
     // ****** MOVEMENT METHODS ***********
     // ***********************************
+
+    /**
+     * Returns whether this robot's body would overlap another robot or a tree
+     * if its center were at the given coordinates.
+     */
+    private boolean isMoveBlocked(float x, float y) {
+    	float radius = robotType.bodyRadius;
+    	nearby.clear();
+    	map.robotGrid.query(x, y, radius, nearby);
+    	map.treeGrid.query(x, y, radius, nearby);
+    	for (int i = 0, n = nearby.size(); i < n; i++) {
+    		int s = nearby.get(i);
+    		if (s != self && map.bodies.intersects(s, x, y, radius)) return true;
+    	}
+    	return false;
+    }
+
+    /**
+     * Returns why this robot cannot move its center to (x, y) this turn, or
+     * null if it can.
+     */
+    private GameActionExceptionType moveFailure(float x, float y) {
+    	if (moves > 0) return GameActionExceptionType.CANT_MOVE_THERE;
+    	MapLocation origin = map.getOrigin();
+    	if (!(x >= origin.x && x < origin.x + map.getWidth() && y >= origin.y && y < origin.y + map.getHeight())) return GameActionExceptionType.CANT_MOVE_THERE;
+    	if (isMoveBlocked(x, y)) return GameActionExceptionType.CANT_MOVE_THERE;
+    	return null;
+    }
     
     /**
      * Returns true if the robot has moved this turn.
@@ -1108,7 +1036,7 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean hasMoved() {
-    	RobotMonitor.useBytecodes(1);
+    	budget.charge(1);
     	return moves > 0;
     }
     
@@ -1120,7 +1048,7 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean hasAttacked() {
-    	RobotMonitor.useBytecodes(1);
+    	budget.charge(1);
     	return attacks > 0;
     }
     
@@ -1132,8 +1060,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean isBuildReady() {
-    	RobotMonitor.useBytecodes(1);
-    	if (map.buildCooldown.containsKey(ri) && map.buildCooldown.get(ri) > 0) return false;
+    	budget.charge(1);
+    	if (map.bodies.buildCooldown[self] > 0) return false;
     	else return true;
     }
 
@@ -1152,22 +1080,11 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean canMove(Direction dir) {
-    	RobotMonitor.useBytecodes(10);
-    	float deltax = dir.getDeltaX(ri.type.strideRadius);
-    	float deltay = dir.getDeltaY(ri.type.strideRadius);
-    	if (ri.location.x + deltax < map.getOrigin().x || ri.location.x + deltax >= map.getOrigin().x + map.getWidth() || ri.location.y + deltay < map.getOrigin().y || ri.location.y + deltay >= map.getOrigin().y + map.getHeight()) return false;
-    	float M = deltay / deltax;
-		for (RobotInfo r : map.robots) {
-			float R = r.type.bodyRadius;
-			float B = ri.location.x - r.location.x;
-			if ((Math.pow(M, 2) + 1) * Math.pow(R, 2) >= Math.pow(B, 2)) return false;
-		}
-		for (TreeInfo t : map.trees) {
-			float R = t.radius;
-			float B = ri.location.x - t.location.x;
-			if ((Math.pow(M, 2) + 1) * Math.pow(R, 2) >= Math.pow(B, 2)) return false;
-		}
-		return true;
+    	budget.charge(10);
+    	float deltax = dir.getDeltaX(robotType.strideRadius);
+    	float deltay = dir.getDeltaY(robotType.strideRadius);
+    	if (selfX() + deltax < map.getOrigin().x || selfX() + deltax >= map.getOrigin().x + map.getWidth() || selfY() + deltay < map.getOrigin().y || selfY() + deltay >= map.getOrigin().y + map.getHeight()) return false;
+    	return !isMoveBlocked(selfX() + deltax, selfY() + deltay);
     }
 
     /**
@@ -1188,22 +1105,11 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean canMove(Direction dir, float distance) {
-    	RobotMonitor.useBytecodes(10);
+    	budget.charge(10);
     	float deltax = dir.getDeltaX(distance);
     	float deltay = dir.getDeltaY(distance);
-    	if (ri.location.x + deltax < map.getOrigin().x || ri.location.x + deltax >= map.getOrigin().x + map.getWidth() || ri.location.y + deltay < map.getOrigin().y || ri.location.y + deltay >= map.getOrigin().y + map.getHeight()) return false;
-    	float M = deltay / deltax;
-		for (RobotInfo r : map.robots) {
-			float R = r.type.bodyRadius;
-			float B = ri.location.x - r.location.x;
-			if ((Math.pow(M, 2) + 1) * Math.pow(R, 2) >= Math.pow(B, 2)) return false;
-		}
-		for (TreeInfo t : map.trees) {
-			float R = t.radius;
-			float B = ri.location.x - t.location.x;
-			if ((Math.pow(M, 2) + 1) * Math.pow(R, 2) >= Math.pow(B, 2)) return false;
-		}
-		return true;
+    	if (selfX() + deltax < map.getOrigin().x || selfX() + deltax >= map.getOrigin().x + map.getWidth() || selfY() + deltay < map.getOrigin().y || selfY() + deltay >= map.getOrigin().y + map.getHeight()) return false;
+    	return !isMoveBlocked(selfX() + deltax, selfY() + deltay);
     }
     
     /**
@@ -1221,27 +1127,16 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean canMove(MapLocation center) {
-    	RobotMonitor.useBytecodes(10);
-    	float deltax = center.x - ri.location.x;
-    	float deltay = center.y - ri.location.y;
-    	if (Math.sqrt(Math.pow(deltax, 2) + Math.pow(deltay, 2)) > ri.type.strideRadius) {
+    	budget.charge(10);
+    	float deltax = center.x - selfX();
+    	float deltay = center.y - selfY();
+    	if (deltax * deltax + deltay * deltay > robotType.strideRadius * robotType.strideRadius) {
     		Direction d = new Direction(deltax, deltay);
-    		deltax = d.getDeltaX(ri.type.strideRadius);
-    		deltay = d.getDeltaY(ri.type.strideRadius);
+    		deltax = d.getDeltaX(robotType.strideRadius);
+    		deltay = d.getDeltaY(robotType.strideRadius);
     	}
-    	if (ri.location.x + deltax < map.getOrigin().x || ri.location.x + deltax >= map.getOrigin().x + map.getWidth() || ri.location.y + deltay < map.getOrigin().y || ri.location.y + deltay >= map.getOrigin().y + map.getHeight()) return false;
-    	float M = deltay / deltax;
-		for (RobotInfo r : map.robots) {
-			float R = r.type.bodyRadius;
-			float B = ri.location.x - r.location.x;
-			if ((Math.pow(M, 2) + 1) * Math.pow(R, 2) >= Math.pow(B, 2)) return false;
-		}
-		for (TreeInfo t : map.trees) {
-			float R = t.radius;
-			float B = ri.location.x - t.location.x;
-			if ((Math.pow(M, 2) + 1) * Math.pow(R, 2) >= Math.pow(B, 2)) return false;
-		}
-		return true;
+    	if (selfX() + deltax < map.getOrigin().x || selfX() + deltax >= map.getOrigin().x + map.getWidth() || selfY() + deltay < map.getOrigin().y || selfY() + deltay >= map.getOrigin().y + map.getHeight()) return false;
+    	return !isMoveBlocked(selfX() + deltax, selfY() + deltay);
     }
     
     /**
@@ -1257,25 +1152,21 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     void move(Direction dir) throws GameActionException {
-    	float deltax = dir.getDeltaX(ri.type.strideRadius);
-    	float deltay = dir.getDeltaY(ri.type.strideRadius);
-    	if (ri.location.x + deltax < map.getOrigin().x || ri.location.x + deltax >= map.getOrigin().x + map.getWidth() || ri.location.y + deltay < map.getOrigin().y || ri.location.y + deltay >= map.getOrigin().y + map.getHeight()) throw new GameActionException(GameActionExceptionType.CANT_MOVE_THERE, "Moving");
-    	float M = deltay / deltax;
-		for (RobotInfo r : map.robots) {
-			float R = r.type.bodyRadius;
-			float B = ri.location.x - r.location.x;
-			if ((Math.pow(M, 2) + 1) * Math.pow(R, 2) >= Math.pow(B, 2)) throw new GameActionException(GameActionExceptionType.CANT_MOVE_THERE, "Moving");
-		}
-		for (TreeInfo t : map.trees) {
-			float R = t.radius;
-			float B = ri.location.x - t.location.x;
-			if ((Math.pow(M, 2) + 1) * Math.pow(R, 2) >= Math.pow(B, 2)) throw new GameActionException(GameActionExceptionType.CANT_MOVE_THERE, "Moving");
-		}
-		if (moves > 0)  throw new GameActionException(GameActionExceptionType.CANT_MOVE_THERE, "Moving");
-		moves++;
-		MapLocation newloc = new MapLocation(ri.getLocation().x + deltax, ri.getLocation().y + deltay);
-		map.robots.remove(ri);
-		ri = new RobotInfo(ri.ID, ri.team, ri.type, newloc, ri.health, ri.attackCount, ri.moveCount);
+    	GameActionExceptionType failure = tryMove(dir);
+    	if (failure != null) throw new GameActionException(failure, "Moving");
+    }
+
+    /**
+     * Moves one stride in the given direction, if move(Direction) would
+     * succeed. Never throws.
+     *
+     * @return null on success, or why it failed, as the type of the
+     * exception move(Direction) would throw
+     *
+     * @battlecode.doc.costlymethod
+     */
+    GameActionExceptionType tryMove(Direction dir) {
+    	return tryMove(dir, robotType.strideRadius);
     }
 
     /**
@@ -1291,25 +1182,21 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     void move(Direction dir, float distance) throws GameActionException {
-    	float deltax = dir.getDeltaX(distance);
-    	float deltay = dir.getDeltaY(distance);
-    	if (ri.location.x + deltax < map.getOrigin().x || ri.location.x + deltax >= map.getOrigin().x + map.getWidth() || ri.location.y + deltay < map.getOrigin().y || ri.location.y + deltay >= map.getOrigin().y + map.getHeight()) throw new GameActionException(GameActionExceptionType.CANT_MOVE_THERE, "Moving distance");
-    	float M = deltay / deltax;
-		for (RobotInfo r : map.robots) {
-			float R = r.type.bodyRadius;
-			float B = ri.location.x - r.location.x;
-			if ((Math.pow(M, 2) + 1) * Math.pow(R, 2) >= Math.pow(B, 2)) throw new GameActionException(GameActionExceptionType.CANT_MOVE_THERE, "Moving distance");
-		}
-		for (TreeInfo t : map.trees) {
-			float R = t.radius;
-			float B = ri.location.x - t.location.x;
-			if ((Math.pow(M, 2) + 1) * Math.pow(R, 2) >= Math.pow(B, 2)) throw new GameActionException(GameActionExceptionType.CANT_MOVE_THERE, "Moving distance");
-		}
-		if (moves > 0)  throw new GameActionException(GameActionExceptionType.CANT_MOVE_THERE, "Moving distance");
-		moves++;
-		MapLocation newloc = new MapLocation(ri.getLocation().x + deltax, ri.getLocation().y + deltay);
-		map.robots.remove(ri);
-		ri = new RobotInfo(ri.ID, ri.team, ri.type, newloc, ri.health, ri.attackCount, ri.moveCount);
+    	GameActionExceptionType failure = tryMove(dir, distance);
+    	if (failure != null) throw new GameActionException(failure, "Moving distance");
+    }
+
+    /**
+     * Moves the given distance in the given direction, if move(Direction,
+     * float) would succeed. Never throws.
+     *
+     * @return null on success, or why it failed, as the type of the
+     * exception move(Direction, float) would throw
+     *
+     * @battlecode.doc.costlymethod
+     */
+    GameActionExceptionType tryMove(Direction dir, float distance) {
+    	return moveTo(selfX() + dir.getDeltaX(distance), selfY() + dir.getDeltaY(distance));
     }
     
     /**
@@ -1324,30 +1211,39 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     void move(MapLocation center) throws GameActionException {
-    	float deltax = center.x - ri.location.x;
-    	float deltay = center.y - ri.location.y;
-    	if (Math.sqrt(Math.pow(deltax, 2) + Math.pow(deltay, 2)) > ri.type.strideRadius) {
+    	GameActionExceptionType failure = tryMove(center);
+    	if (failure != null) throw new GameActionException(failure, "Moving location");
+    }
+
+    /**
+     * Moves toward the given location, at most one stride, if
+     * move(MapLocation) would succeed. Never throws.
+     *
+     * @return null on success, or why it failed, as the type of the
+     * exception move(MapLocation) would throw
+     *
+     * @battlecode.doc.costlymethod
+     */
+    GameActionExceptionType tryMove(MapLocation center) {
+    	float deltax = center.x - selfX();
+    	float deltay = center.y - selfY();
+    	if (deltax * deltax + deltay * deltay > robotType.strideRadius * robotType.strideRadius) {
     		Direction d = new Direction(deltax, deltay);
-    		deltax = d.getDeltaX(ri.type.strideRadius);
-    		deltay = d.getDeltaY(ri.type.strideRadius);
+    		deltax = d.getDeltaX(robotType.strideRadius);
+    		deltay = d.getDeltaY(robotType.strideRadius);
     	}
-    	if (ri.location.x + deltax < map.getOrigin().x || ri.location.x + deltax >= map.getOrigin().x + map.getWidth() || ri.location.y + deltay < map.getOrigin().y || ri.location.y + deltay >= map.getOrigin().y + map.getHeight()) throw new GameActionException(GameActionExceptionType.CANT_MOVE_THERE, "Moving location");
-    	float M = deltay / deltax;
-		for (RobotInfo r : map.robots) {
-			float R = r.type.bodyRadius;
-			float B = ri.location.x - r.location.x;
-			if ((Math.pow(M, 2) + 1) * Math.pow(R, 2) >= Math.pow(B, 2)) throw new GameActionException(GameActionExceptionType.CANT_MOVE_THERE, "Moving location");
-		}
-		for (TreeInfo t : map.trees) {
-			float R = t.radius;
-			float B = ri.location.x - t.location.x;
-			if ((Math.pow(M, 2) + 1) * Math.pow(R, 2) >= Math.pow(B, 2)) throw new GameActionException(GameActionExceptionType.CANT_MOVE_THERE, "Moving location");
-		}
-		if (moves > 0)  throw new GameActionException(GameActionExceptionType.CANT_MOVE_THERE, "Moving location");
-		moves++;
-		MapLocation newloc = new MapLocation(ri.getLocation().x + deltax, ri.getLocation().y + deltay);
-		map.robots.remove(ri);
-		ri = new RobotInfo(ri.ID, ri.team, ri.type, newloc, ri.health, ri.attackCount, ri.moveCount);
+    	return moveTo(selfX() + deltax, selfY() + deltay);
+    }
+
+    /**
+     * Moves this robot's center to (x, y) if it can move there this turn.
+     */
+    private GameActionExceptionType moveTo(float x, float y) {
+    	GameActionExceptionType failure = moveFailure(x, y);
+    	if (failure != null) return failure;
+    	moves++;
+    	map.moveRobot(self, x, y);
+    	return null;
     }
 
     // ***********************************
@@ -1363,8 +1259,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean canStrike() {
-    	RobotMonitor.useBytecodes(5);
-    	if (ri.type.equals(RobotType.LUMBERJACK) && attacks == 0) return true;
+    	budget.charge(5);
+    	if (robotType.equals(RobotType.LUMBERJACK) && attacks == 0) return true;
     	else return false;
     }
 
@@ -1378,17 +1274,30 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     void strike() throws GameActionException {
-    	if (ri.type.equals(RobotType.LUMBERJACK) && attacks == 0) {
-    		RobotMonitor.useBytecodes(-100);
-    		RobotInfo[] ris = senseNearbyRobots(ri.type.strideRadius);
-    		for (RobotInfo r : ris) {
-    			map.robots.remove(r);
-    			if (r.health - RobotType.LUMBERJACK.attackPower > 0) {
-    				map.robots.add(new RobotInfo(r.ID, r.team, r.type, r.location, r.health - RobotType.LUMBERJACK.attackPower, r.attackCount, r.moveCount));
-    			}
-    		}
+    	GameActionExceptionType failure = tryStrike();
+    	if (failure != null) throw new GameActionException(failure, "Striking");
+    }
+
+    /**
+     * Strikes every robot within one stride, if strike() would succeed. Never
+     * throws.
+     *
+     * @return null on success, or why it failed, as the type of the
+     * exception strike() would throw
+     *
+     * @battlecode.doc.costlymethod
+     */
+    GameActionExceptionType tryStrike() {
+    	if (!robotType.equals(RobotType.LUMBERJACK) || attacks > 0) return GameActionExceptionType.CANT_DO_THAT;
+    	attacks++;
+    	float x = selfX(), y = selfY(), range = robotType.strideRadius;
+    	nearby.clear();
+    	map.robotGrid.query(x, y, range, nearby);
+    	for (int i = 0, n = nearby.size(); i < n; i++) {
+    		int s = nearby.get(i);
+    		if (s != self && map.bodies.overlaps(s, x, y, range)) map.damage(s, RobotType.LUMBERJACK.attackPower);
     	}
-    	else throw new GameActionException(GameActionExceptionType.CANT_DO_THAT, "Striking");
+    	return null;
     }
 
     /**
@@ -1402,8 +1311,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean canFireSingleShot() {
-    	RobotMonitor.useBytecodes(5);
-    	if (map.getBullets(ri.team) >= GameConstants.SINGLE_SHOT_COST && ri.type != RobotType.ARCHON && ri.type != RobotType.GARDENER && ri.type != RobotType.LUMBERJACK && attacks == 0) return true;
+    	budget.charge(5);
+    	if (map.getBullets(robotTeam) >= GameConstants.SINGLE_SHOT_COST && robotType != RobotType.ARCHON && robotType != RobotType.GARDENER && robotType != RobotType.LUMBERJACK && attacks == 0) return true;
     	else return false;
     }
 
@@ -1418,8 +1327,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean canFireTriadShot() {
-    	RobotMonitor.useBytecodes(5);
-    	if (map.getBullets(ri.team) >= GameConstants.TRIAD_SHOT_COST && ri.type != RobotType.ARCHON && ri.type != RobotType.GARDENER && ri.type != RobotType.LUMBERJACK && attacks == 0) return true;
+    	budget.charge(5);
+    	if (map.getBullets(robotTeam) >= GameConstants.TRIAD_SHOT_COST && robotType != RobotType.ARCHON && robotType != RobotType.GARDENER && robotType != RobotType.LUMBERJACK && attacks == 0) return true;
     	else return false;
     }
 
@@ -1434,8 +1343,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean canFirePentadShot() {
-    	RobotMonitor.useBytecodes(5);
-    	if (map.getBullets(ri.team) >= GameConstants.PENTAD_SHOT_COST && ri.type != RobotType.ARCHON && ri.type != RobotType.GARDENER && ri.type != RobotType.LUMBERJACK && attacks == 0) return true;
+    	budget.charge(5);
+    	if (map.getBullets(robotTeam) >= GameConstants.PENTAD_SHOT_COST && robotType != RobotType.ARCHON && robotType != RobotType.GARDENER && robotType != RobotType.LUMBERJACK && attacks == 0) return true;
     	else return false;
     }
 
@@ -1452,11 +1361,21 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     void fireSingleShot(Direction dir) throws GameActionException {
-    	if (map.getBullets(ri.team) >= GameConstants.SINGLE_SHOT_COST && ri.type != RobotType.ARCHON && ri.type != RobotType.GARDENER && ri.type != RobotType.LUMBERJACK && attacks == 0) {
-    		map.changeBullets(ri.team, -GameConstants.SINGLE_SHOT_COST);
-    		map.createBullet(ri.location, dir, ri.type.bulletSpeed, ri.type.attackPower, ri);
-    	}
-    	else throw new GameActionException(GameActionExceptionType.CANT_DO_THAT, "Fire single shot");
+    	GameActionExceptionType failure = tryFireSingleShot(dir);
+    	if (failure != null) throw new GameActionException(failure, "Fire single shot");
+    }
+
+    /**
+     * Fires a single shot in the given direction, if fireSingleShot(Direction)
+     * would succeed. Never throws.
+     *
+     * @return null on success, or why it failed, as the type of the
+     * exception fireSingleShot(Direction) would throw
+     *
+     * @battlecode.doc.costlymethod
+     */
+    GameActionExceptionType tryFireSingleShot(Direction dir) {
+    	return fire(dir, 1, 0, GameConstants.SINGLE_SHOT_COST);
     }
 
     /**
@@ -1474,13 +1393,21 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     void fireTriadShot(Direction dir) throws GameActionException {
-    	if (map.getBullets(ri.team) >= GameConstants.TRIAD_SHOT_COST && ri.type != RobotType.ARCHON && ri.type != RobotType.GARDENER && ri.type != RobotType.LUMBERJACK && attacks == 0) {
-    		map.changeBullets(ri.team, -GameConstants.TRIAD_SHOT_COST);
-    		map.createBullet(ri.location, dir, ri.type.bulletSpeed, ri.type.attackPower, ri);
-    		map.createBullet(ri.location, dir.rotateLeftDegrees(GameConstants.TRIAD_SPREAD_DEGREES), ri.type.bulletSpeed, ri.type.attackPower, ri);
-    		map.createBullet(ri.location, dir.rotateRightDegrees(GameConstants.TRIAD_SPREAD_DEGREES), ri.type.bulletSpeed, ri.type.attackPower, ri);
-    	}
-    	else throw new GameActionException(GameActionExceptionType.CANT_DO_THAT, "Fire triad shot");
+    	GameActionExceptionType failure = tryFireTriadShot(dir);
+    	if (failure != null) throw new GameActionException(failure, "Fire triad shot");
+    }
+
+    /**
+     * Fires a triad shot in the given direction, if fireTriadShot(Direction)
+     * would succeed. Never throws.
+     *
+     * @return null on success, or why it failed, as the type of the
+     * exception fireTriadShot(Direction) would throw
+     *
+     * @battlecode.doc.costlymethod
+     */
+    GameActionExceptionType tryFireTriadShot(Direction dir) {
+    	return fire(dir, 3, GameConstants.TRIAD_SPREAD_DEGREES, GameConstants.TRIAD_SHOT_COST);
     }
 
     /**
@@ -1498,15 +1425,58 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     void firePentadShot(Direction dir) throws GameActionException {
-    	if (map.getBullets(ri.team) >= GameConstants.PENTAD_SHOT_COST && ri.type != RobotType.ARCHON && ri.type != RobotType.GARDENER && ri.type != RobotType.LUMBERJACK && attacks == 0) {
-    		map.changeBullets(ri.team, -GameConstants.PENTAD_SHOT_COST);
-    		map.createBullet(ri.location, dir, ri.type.bulletSpeed, ri.type.attackPower, ri);
-    		map.createBullet(ri.location, dir.rotateLeftDegrees(GameConstants.PENTAD_SPREAD_DEGREES), ri.type.bulletSpeed, ri.type.attackPower, ri);
-    		map.createBullet(ri.location, dir.rotateRightDegrees(GameConstants.PENTAD_SPREAD_DEGREES), ri.type.bulletSpeed, ri.type.attackPower, ri);
-    		map.createBullet(ri.location, dir.rotateRightDegrees(GameConstants.PENTAD_SPREAD_DEGREES * 2), ri.type.bulletSpeed, ri.type.attackPower, ri);
-    		map.createBullet(ri.location, dir.rotateRightDegrees(GameConstants.PENTAD_SPREAD_DEGREES * 2), ri.type.bulletSpeed, ri.type.attackPower, ri);
+    	GameActionExceptionType failure = tryFirePentadShot(dir);
+    	if (failure != null) throw new GameActionException(failure, "Fire pentad shot");
+    }
+
+    /**
+     * Fires a pentad shot in the given direction, if firePentadShot(Direction)
+     * would succeed. Never throws.
+     *
+     * @return null on success, or why it failed, as the type of the
+     * exception firePentadShot(Direction) would throw
+     *
+     * @battlecode.doc.costlymethod
+     */
+    GameActionExceptionType tryFirePentadShot(Direction dir) {
+    	return fire(dir, 5, GameConstants.PENTAD_SPREAD_DEGREES, GameConstants.PENTAD_SHOT_COST);
+    }
+
+    /**
+     * Fires count bullets as fireBullets does if this robot can pay for them
+     * this turn.
+     */
+    private GameActionExceptionType fire(Direction dir, int count, float spreadDegrees, float cost) {
+    	GameActionExceptionType failure = shotFailure(cost);
+    	if (failure != null) return failure;
+    	fireBullets(dir, count, spreadDegrees, cost);
+    	return null;
+    }
+
+    /**
+     * Returns why this robot cannot fire a shot of the given cost, or null if
+     * it can.
+     */
+    private GameActionExceptionType shotFailure(float cost) {
+    	if (robotType == RobotType.ARCHON || robotType == RobotType.GARDENER || robotType == RobotType.LUMBERJACK || attacks > 0) return GameActionExceptionType.CANT_DO_THAT;
+    	if (map.getBullets(robotTeam) < cost) return GameActionExceptionType.NOT_ENOUGH_RESOURCE;
+    	return null;
+    }
+
+    /**
+     * Pays for and fires count bullets, one in the given direction and the
+     * rest in pairs spread evenly to either side of it. This counts as an
+     * attack.
+     */
+    private void fireBullets(Direction dir, int count, float spreadDegrees, float cost) {
+    	float x = selfX(), y = selfY();
+    	attacks++;
+    	map.changeBullets(robotTeam, -cost);
+    	map.createBullet(x, y, dir, robotType.bulletSpeed, robotType.attackPower, self);
+    	for (int k = 1; 2 * k < count; k++) {
+    		map.createBullet(x, y, dir.rotateLeftDegrees(spreadDegrees * k), robotType.bulletSpeed, robotType.attackPower, self);
+    		map.createBullet(x, y, dir.rotateRightDegrees(spreadDegrees * k), robotType.bulletSpeed, robotType.attackPower, self);
     	}
-    	else throw new GameActionException(GameActionExceptionType.CANT_DO_THAT, "Fire pentad shot");
     }
 
     // ***********************************
@@ -1523,13 +1493,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean canChop(MapLocation loc) {
-    	RobotMonitor.useBytecodes(5);
-    	boolean tree = false;
-    	for (TreeInfo t : map.trees) {
-			if (Math.sqrt(Math.pow(t.location.x - loc.x, 2) + Math.pow(t.location.y - loc.y, 2)) <= t.getRadius()) tree = true;
-		}
-    	if (ri.type.equals(RobotType.LUMBERJACK) && attacks == 0 && tree && Math.sqrt(Math.pow(loc.x - ri.location.x, 2) + Math.pow(loc.y - ri.location.y, 2)) <= ri.type.sensorRadius) return true;
-    	else return false;
+    	budget.charge(5);
+    	return chopFailure(bodyAt(map.treeGrid, loc.x, loc.y)) == null;
     }
 
     /**
@@ -1542,12 +1507,8 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     boolean canChop(int id) {
-    	TreeInfo tree = null;
-    	for (TreeInfo t : map.trees) {
-    		if (t.ID == id) tree = t;
-    	}
-    	if (tree == null) return false;
-    	else return canChop(tree.location);
+    	budget.charge(5);
+    	return chopFailure(map.bodies.treeSlot(id)) == null;
     }
 
     /**
@@ -1562,7 +1523,21 @@ public strictfp class RobotController {
      * @battlecode.doc.costlymethod
      */
     void chop(MapLocation loc) throws GameActionException {
-    	
+    	GameActionExceptionType failure = tryChop(loc);
+    	if (failure != null) throw new GameActionException(failure, "Chopping");
+    }
+
+    /**
+     * Chops the tree at the given location, if chop(MapLocation) would
+     * succeed. Never throws.
+     *
+     * @return null on success, or why it failed, as the type of the
+     * exception chop(MapLocation) would throw
+     *
+     * @battlecode.doc.costlymethod
+     */
+    GameActionExceptionType tryChop(MapLocation loc) {
+    	return chopTree(bodyAt(map.treeGrid, loc.x, loc.y));
     }
 
     /**
@@ -1575,7 +1550,23 @@ public strictfp class RobotController {
      *
      * @battlecode.doc.costlymethod
      */
-    void chop(int id) throws GameActionException;
+    void chop(int id) throws GameActionException {
+    	GameActionExceptionType failure = tryChop(id);
+    	if (failure != null) throw new GameActionException(failure, "Chopping by id");
+    }
+
+    /**
+     * Chops the tree with the given id, if chop(int) would succeed. Never
+     * throws.
+     *
+     * @return null on success, or why it failed, as the type of the
+     * exception chop(int) would throw
+     *
+     * @battlecode.doc.costlymethod
+     */
+    GameActionExceptionType tryChop(int id) {
+    	return chopTree(map.bodies.treeSlot(id));
+    }
 
     /**
      * Tells if this robot can shake the tree at the given location. Checks robot
@@ -1586,7 +1577,10 @@ public strictfp class RobotController {
      *
      * @battlecode.doc.costlymethod
      */
-    boolean canShake(MapLocation loc);
+    boolean canShake(MapLocation loc) {
+    	budget.charge(5);
+    	return shakeFailure(bodyAt(map.treeGrid, loc.x, loc.y)) == null;
+    }
 
     /**
      * Tells if a robot can shake a tree with this id. Checks robot stride radius,
@@ -1597,7 +1591,10 @@ public strictfp class RobotController {
      *
      * @battlecode.doc.costlymethod
      */
-    boolean canShake(int id);
+    boolean canShake(int id) {
+    	budget.charge(5);
+    	return shakeFailure(map.bodies.treeSlot(id)) == null;
+    }
 
     /**
      * Shakes the target tree at location loc for all the bullets held within
@@ -1612,7 +1609,23 @@ public strictfp class RobotController {
      *
      * @battlecode.doc.costlymethod
      */
-    void shake(MapLocation loc) throws GameActionException;
+    void shake(MapLocation loc) throws GameActionException {
+    	GameActionExceptionType failure = tryShake(loc);
+    	if (failure != null) throw new GameActionException(failure, "Shaking");
+    }
+
+    /**
+     * Shakes the tree at the given location, if shake(MapLocation) would
+     * succeed. Never throws.
+     *
+     * @return null on success, or why it failed, as the type of the
+     * exception shake(MapLocation) would throw
+     *
+     * @battlecode.doc.costlymethod
+     */
+    GameActionExceptionType tryShake(MapLocation loc) {
+    	return shakeTree(bodyAt(map.treeGrid, loc.x, loc.y));
+    }
 
     /**
      * Shakes the target tree at location loc for all the bullets held within
@@ -1626,7 +1639,23 @@ public strictfp class RobotController {
      *
      * @battlecode.doc.costlymethod
      */
-    void shake(int id) throws GameActionException;
+    void shake(int id) throws GameActionException {
+    	GameActionExceptionType failure = tryShake(id);
+    	if (failure != null) throw new GameActionException(failure, "Shaking by id");
+    }
+
+    /**
+     * Shakes the tree with the given id, if shake(int) would succeed. Never
+     * throws.
+     *
+     * @return null on success, or why it failed, as the type of the
+     * exception shake(int) would throw
+     *
+     * @battlecode.doc.costlymethod
+     */
+    GameActionExceptionType tryShake(int id) {
+    	return shakeTree(map.bodies.treeSlot(id));
+    }
 
     /**
      * Determines whether the robot can water a tree. Takes into accout the
@@ -1638,7 +1667,10 @@ public strictfp class RobotController {
      *
      * @battlecode.doc.costlymethod
      */
-    boolean canWater(MapLocation loc);
+    boolean canWater(MapLocation loc) {
+    	budget.charge(5);
+    	return waterFailure(bodyAt(map.treeGrid, loc.x, loc.y)) == null;
+    }
 
     /**
      * Determines whether the robot can water a tree. Takes into accout the
@@ -1650,7 +1682,10 @@ public strictfp class RobotController {
      *
      * @battlecode.doc.costlymethod
      */
-    boolean canWater(int id);
+    boolean canWater(int id) {
+    	budget.charge(5);
+    	return waterFailure(map.bodies.treeSlot(id)) == null;
+    }
 
     /**
      * Waters the target tree at location loc, healing
@@ -1666,7 +1701,23 @@ public strictfp class RobotController {
      *
      * @battlecode.doc.costlymethod
      */
-    void water(MapLocation loc) throws GameActionException;
+    void water(MapLocation loc) throws GameActionException {
+    	GameActionExceptionType failure = tryWater(loc);
+    	if (failure != null) throw new GameActionException(failure, "Watering");
+    }
+
+    /**
+     * Waters the tree at the given location, if water(MapLocation) would
+     * succeed. Never throws.
+     *
+     * @return null on success, or why it failed, as the type of the
+     * exception water(MapLocation) would throw
+     *
+     * @battlecode.doc.costlymethod
+     */
+    GameActionExceptionType tryWater(MapLocation loc) {
+    	return waterTree(bodyAt(map.treeGrid, loc.x, loc.y));
+    }
 
     /**
      * Waters the target tree at location loc, healing
@@ -1681,7 +1732,23 @@ public strictfp class RobotController {
      *
      * @battlecode.doc.costlymethod
      */
-    void water(int id) throws GameActionException;
+    void water(int id) throws GameActionException {
+    	GameActionExceptionType failure = tryWater(id);
+    	if (failure != null) throw new GameActionException(failure, "Watering by id");
+    }
+
+    /**
+     * Waters the tree with the given id, if water(int) would succeed. Never
+     * throws.
+     *
+     * @return null on success, or why it failed, as the type of the
+     * exception water(int) would throw
+     *
+     * @battlecode.doc.costlymethod
+     */
+    GameActionExceptionType tryWater(int id) {
+    	return waterTree(map.bodies.treeSlot(id));
+    }
 
     /**
      * Determines whether or not this robot can water a tree, taking into
@@ -1692,7 +1759,10 @@ public strictfp class RobotController {
      *
      * @battlecode.doc.costlymethod
      */
-    boolean canWater();
+    boolean canWater() {
+    	budget.charge(1);
+    	return robotType == RobotType.GARDENER && waters == 0;
+    }
 
     /**
      * Determines whether or not this robot can shake a tree, taking into
@@ -1702,7 +1772,10 @@ public strictfp class RobotController {
      *
      * @battlecode.doc.costlymethod
      */
-    boolean canShake();
+    boolean canShake() {
+    	budget.charge(1);
+    	return shakes == 0;
+    }
 
     /**
      * Determines whether or not there is a tree at location loc and, if so,
@@ -1715,7 +1788,11 @@ public strictfp class RobotController {
      *
      * @battlecode.doc.costlymethod
      */
-    boolean canInteractWithTree(MapLocation loc);
+    boolean canInteractWithTree(MapLocation loc) {
+    	budget.charge(5);
+    	int s = bodyAt(map.treeGrid, loc.x, loc.y);
+    	return s >= 0 && inInteractionRange(s);
+    }
 
     /**
      * Determines whether or not there is a tree with the given id and, if so,
@@ -1728,7 +1805,140 @@ public strictfp class RobotController {
      *
      * @battlecode.doc.costlymethod
      */
-    boolean canInteractWithTree(int id);
+    boolean canInteractWithTree(int id) {
+    	budget.charge(5);
+    	int s = map.bodies.treeSlot(id);
+    	return s >= 0 && inInteractionRange(s);
+    }
+
+    /**
+     * Returns whether the tree in slot s is within one stride of the edge of
+     * this robot.
+     */
+    private boolean inInteractionRange(int s) {
+    	return map.bodies.overlaps(s, selfX(), selfY(), robotType.bodyRadius + robotType.strideRadius);
+    }
+
+    /**
+     * Returns why this robot cannot chop the tree in slot s this turn, or
+     * null if it can. s is -1 if there is no tree.
+     */
+    private GameActionExceptionType chopFailure(int s) {
+    	if (robotType != RobotType.LUMBERJACK || attacks > 0) return GameActionExceptionType.CANT_DO_THAT;
+    	if (s < 0) return GameActionExceptionType.NO_TREE_THERE;
+    	if (!inInteractionRange(s)) return GameActionExceptionType.OUT_OF_RANGE;
+    	return null;
+    }
+
+    /**
+     * Chops the tree in slot s if this robot can this turn.
+     */
+    private GameActionExceptionType chopTree(int s) {
+    	GameActionExceptionType failure = chopFailure(s);
+    	if (failure != null) return failure;
+    	attacks++;
+    	map.damage(s, GameConstants.LUMBERJACK_CHOP_DAMAGE);
+    	return null;
+    }
+
+    /**
+     * Returns why this robot cannot shake the tree in slot s this turn, or
+     * null if it can. s is -1 if there is no tree.
+     */
+    private GameActionExceptionType shakeFailure(int s) {
+    	if (shakes > 0) return GameActionExceptionType.CANT_DO_THAT;
+    	if (s < 0) return GameActionExceptionType.NO_TREE_THERE;
+    	if (!inInteractionRange(s)) return GameActionExceptionType.OUT_OF_RANGE;
+    	return null;
+    }
+
+    /**
+     * Shakes the tree in slot s if this robot can this turn.
+     */
+    private GameActionExceptionType shakeTree(int s) {
+    	GameActionExceptionType failure = shakeFailure(s);
+    	if (failure != null) return failure;
+    	shakes++;
+    	map.changeBullets(robotTeam, map.shake(s));
+    	return null;
+    }
+
+    /**
+     * Returns why this robot cannot water the tree in slot s this turn, or
+     * null if it can. s is -1 if there is no tree.
+     */
+    private GameActionExceptionType waterFailure(int s) {
+    	if (robotType != RobotType.GARDENER || waters > 0) return GameActionExceptionType.CANT_DO_THAT;
+    	if (s < 0) return GameActionExceptionType.NO_TREE_THERE;
+    	if (!inInteractionRange(s)) return GameActionExceptionType.OUT_OF_RANGE;
+    	return null;
+    }
+
+    /**
+     * Waters the tree in slot s if this robot can this turn.
+     */
+    private GameActionExceptionType waterTree(int s) {
+    	GameActionExceptionType failure = waterFailure(s);
+    	if (failure != null) return failure;
+    	waters++;
+    	map.heal(s, GameConstants.WATER_HEALTH_REGEN_RATE);
+    	return null;
+    }
+
+    // ***********************************
+    // ****** COMPACT ACTIONS ************
+    // ***********************************
+
+    /**
+     * Applies a compact action, laid out as Action describes, read from
+     * action[offset, offset + Action.SIZE). The move, the shot and the tree
+     * interaction are each checked once against the same rules as the
+     * matching can method and applied only if legal. Nothing is thrown for
+     * an illegal part, which makes this the cheap way to play the raw
+     * outputs of a network.
+     *
+     * @param action the array holding the action
+     * @param offset the index in action of its first value
+     * @return the result of each part, packed as Action describes
+     *
+     * @battlecode.doc.costlymethod
+     */
+    int act(float[] action, int offset) {
+    	budget.charge(20);
+    	int move = actMove(action, offset);
+    	int fire = actFire(action, offset);
+    	int interact = actOnTree(action, offset);
+    	return move << Action.MOVE | fire << Action.FIRE | interact << Action.INTERACT;
+    }
+
+    private int actMove(float[] action, int offset) {
+    	float distance = action[offset + Action.MOVE_DISTANCE];
+    	if (!(distance > 0)) return Action.SKIPPED;
+    	distance = Math.min(distance, 1) * robotType.strideRadius;
+    	float radians = Action.radians(action[offset + Action.MOVE_ANGLE]);
+    	float x = selfX() + (float)(distance * Math.cos(radians));
+    	float y = selfY() + (float)(distance * Math.sin(radians));
+    	return Action.code(moveTo(x, y));
+    }
+
+    private int actFire(float[] action, int offset) {
+    	int shot = Action.choice(action[offset + Action.SHOT], Action.PENTAD);
+    	if (shot == Action.NO_SHOT) return Action.SKIPPED;
+    	float cost = shot == Action.SINGLE ? GameConstants.SINGLE_SHOT_COST : shot == Action.TRIAD ? GameConstants.TRIAD_SHOT_COST : GameConstants.PENTAD_SHOT_COST;
+    	float spread = shot == Action.TRIAD ? GameConstants.TRIAD_SPREAD_DEGREES : GameConstants.PENTAD_SPREAD_DEGREES;
+    	Direction dir = new Direction(Action.radians(action[offset + Action.SHOT_ANGLE]));
+    	return Action.code(fire(dir, 2 * shot - 1, spread, cost));
+    }
+
+    private int actOnTree(float[] action, int offset) {
+    	int kind = Action.choice(action[offset + Action.TREE], Action.WATER);
+    	if (kind == Action.NO_TREE) return Action.SKIPPED;
+    	float x = selfX() + action[offset + Action.TREE_DX] * robotType.sensorRadius;
+    	float y = selfY() + action[offset + Action.TREE_DY] * robotType.sensorRadius;
+    	int s = Float.isFinite(x) && Float.isFinite(y) ? bodyAt(map.treeGrid, x, y) : -1;
+    	GameActionExceptionType failure = kind == Action.CHOP ? chopTree(s) : kind == Action.SHAKE ? shakeTree(s) : waterTree(s);
+    	return Action.code(failure);
+    }
 
     // ***********************************
     // ****** SIGNALING METHODS **********
@@ -1908,7 +2118,10 @@ public strictfp class RobotController {
      *
      * @battlecode.doc.costlymethod
      */
-    void disintegrate();
+    void disintegrate() {
+    	destroy();
+    	throw TurnEndedError.INSTANCE;
+    }
 
     /**
      * Causes your team to lose the game. It's like typing "gg."
@@ -1,32 +1,70 @@
 package battlecode.common;
 
+/**
+ * Static access to the bytecode budget of the robot whose turn is running on
+ * the calling thread, for code such as Clock that has no RobotController.
+ * Budgets belong to the robots themselves, so several robots or matches can
+ * run on different threads at once.
+ * <p>
+ * Instrumented player code calls useBytecodes once per basic block. On the
+ * workers of a MatchFarm the running budget is a field of the worker thread
+ * itself, so the lookup shares nothing between threads and skips the
+ * ThreadLocal; matches played on any other thread fall back to it.
+ */
 public class RobotMonitor {
 	
-	private static int bytecodesUsed;
-	private static int maxBytecodes;
+	private static final ThreadLocal<BytecodeBudget> running = new ThreadLocal<>();
 	
+	/**
+	 * Makes the given budget the one charged by this thread's static calls;
+	 * null once the robot's turn is over.
+	 */
+	static void setRunning(BytecodeBudget budget) {
+		Thread t = Thread.currentThread();
+		if (t instanceof MatchWorker) ((MatchWorker)t).running = budget;
+		else running.set(budget);
+	}
+	
+	/**
+	 * @return the budget running on the calling thread, or null
+	 */
+	private static BytecodeBudget current() {
+		Thread t = Thread.currentThread();
+		return t instanceof MatchWorker ? ((MatchWorker)t).running : running.get();
+	}
+	
+	/**
+	 * Ends the running robot's turn. Does nothing if no robot is running on
+	 * this thread.
+	 */
 	public static void pause() {
-		
+		if (current() != null) throw TurnEndedError.INSTANCE;
 	}
 	
 	public static int getBytecodesLeft() {
-		return maxBytecodes - bytecodesUsed;
+		BytecodeBudget b = current();
+		return b == null ? 0 : b.getLeft();
 	}
 	
 	public static int getBytecodeNum() {
-		return bytecodesUsed;
+		BytecodeBudget b = current();
+		return b == null ? 0 : b.getUsed();
 	}
 	
 	public static void setMaxBytecodes(int b) {
-		maxBytecodes = b;
+		BytecodeBudget budget = current();
+		if (budget != null) budget.setLimit(b);
 	}
 	
 	public static void setBytecodesUsed(int b) {
-		bytecodesUsed = b;
+		BytecodeBudget budget = current();
+		if (budget != null) budget.setUsed(b);
 	}
 	
 	public static void useBytecodes(int b) {
-		bytecodesUsed += b;
+		if (!BytecodeBudget.METERED) return;
+		BytecodeBudget budget = current();
+		if (budget != null) budget.charge(b);
 	}
 	
 }
@@ -0,0 +1,241 @@
+package battlecode.common;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the map that buckets bodies of an EntityStore by every
+ * cell their bounding box overlaps, so radius and point queries only visit
+ * nearby cells instead of every body on the map. Cells hold store slots.
+ * A fork shares the cell arrays with its parent; each grid copies a cell
+ * the first time it changes it.
+ */
+class SpatialGrid {
+
+	/**
+	 * Side length of a cell. A robot of the largest radius spans at most
+	 * two cells in each direction.
+	 */
+	static final float CELL_SIZE = 2 * GameConstants.MAX_ROBOT_RADIUS;
+
+	private final EntityStore store;
+	private final float originX, originY;
+	private final int cols, rows;
+	private final int[][] cells;
+	private final int[] counts;
+	/** Whether each cell array belongs to this grid alone. */
+	private final boolean[] owned;
+
+	SpatialGrid(EntityStore store, MapLocation origin, int width, int height) {
+		this.store = store;
+		this.originX = origin.x;
+		this.originY = origin.y;
+		this.cols = Math.max(1, (int)Math.ceil(width / CELL_SIZE));
+		this.rows = Math.max(1, (int)Math.ceil(height / CELL_SIZE));
+		this.cells = new int[cols * rows][4];
+		this.counts = new int[cols * rows];
+		this.owned = new boolean[cols * rows];
+		Arrays.fill(owned, true);
+	}
+
+	private SpatialGrid(SpatialGrid parent, EntityStore store) {
+		this.store = store;
+		this.originX = parent.originX;
+		this.originY = parent.originY;
+		this.cols = parent.cols;
+		this.rows = parent.rows;
+		this.cells = parent.cells.clone();
+		this.counts = parent.counts.clone();
+		this.owned = new boolean[cells.length];
+		Arrays.fill(parent.owned, false);
+	}
+
+	/**
+	 * @param store the fork of this grid's store the new grid indexes
+	 * @return a grid with the same contents that copies cells on write
+	 */
+	SpatialGrid fork(EntityStore store) {
+		return new SpatialGrid(this, store);
+	}
+
+	/**
+	 * @return the array of cell c, after copying it if it is shared
+	 */
+	private int[] own(int c) {
+		if (!owned[c]) {
+			cells[c] = cells[c].clone();
+			owned[c] = true;
+		}
+		return cells[c];
+	}
+
+	int cellX(float x) {
+		int cx = (int)Math.floor((x - originX) / CELL_SIZE);
+		return cx < 0 ? 0 : (cx >= cols ? cols - 1 : cx);
+	}
+
+	int cellY(float y) {
+		int cy = (int)Math.floor((y - originY) / CELL_SIZE);
+		return cy < 0 ? 0 : (cy >= rows ? rows - 1 : cy);
+	}
+
+	int getCols() {
+		return cols;
+	}
+
+	int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Buckets the body in slot s at its current position and radius.
+	 */
+	void insert(int s) {
+		float x = store.x[s], y = store.y[s], r = store.radius[s];
+		int x0 = cellX(x - r), x1 = cellX(x + r);
+		int y0 = cellY(y - r), y1 = cellY(y + r);
+		for (int cy = y0; cy <= y1; cy++) {
+			for (int cx = x0; cx <= x1; cx++) {
+				int c = cy * cols + cx;
+				int[] cell = own(c);
+				if (counts[c] == cell.length) cells[c] = cell = Arrays.copyOf(cell, counts[c] * 2);
+				cell[counts[c]++] = s;
+			}
+		}
+	}
+
+	/**
+	 * Removes the body in slot s. Must be called while the store still holds
+	 * the position and radius the body was inserted with.
+	 */
+	void remove(int s) {
+		float x = store.x[s], y = store.y[s], r = store.radius[s];
+		int x0 = cellX(x - r), x1 = cellX(x + r);
+		int y0 = cellY(y - r), y1 = cellY(y + r);
+		for (int cy = y0; cy <= y1; cy++) {
+			for (int cx = x0; cx <= x1; cx++) {
+				int c = cy * cols + cx;
+				int[] cell = cells[c];
+				for (int i = counts[c] - 1; i >= 0; i--) {
+					if (cell[i] == s) {
+						cell = own(c);
+						cell[i] = cell[--counts[c]];
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	void clear() {
+		Arrays.fill(counts, 0);
+	}
+
+	/**
+	 * @return the number of bytes write will produce
+	 */
+	int snapshotBytes() {
+		int bytes = 0;
+		for (int c = 0; c < counts.length; c++) bytes += 4 + counts[c] * 4;
+		return bytes;
+	}
+
+	/**
+	 * Writes the slots of every cell in their current order, which decides
+	 * the order queries report bodies in.
+	 */
+	void write(ByteBuffer out) {
+		for (int c = 0; c < counts.length; c++) {
+			out.putInt(counts[c]);
+			for (int i = 0; i < counts[c]; i++) out.putInt(cells[c][i]);
+		}
+	}
+
+	/**
+	 * Replaces the contents of every cell with what write produced on a grid
+	 * of the same size.
+	 */
+	void read(ByteBuffer in) {
+		for (int c = 0; c < counts.length; c++) {
+			int n = in.getInt();
+			int[] cell = own(c);
+			if (cell.length < n) cells[c] = cell = new int[n];
+			for (int i = 0; i < n; i++) cell[i] = in.getInt();
+			counts[c] = n;
+		}
+	}
+
+	/**
+	 * Adds to out every slot whose bounding box overlaps the square of the
+	 * given half-width around (x, y). Each body is reported once; callers
+	 * still have to run their exact distance test on the candidates.
+	 */
+	void query(float x, float y, float radius, IntList out) {
+		int qx0 = cellX(x - radius), qx1 = cellX(x + radius);
+		int qy0 = cellY(y - radius), qy1 = cellY(y + radius);
+		for (int cy = qy0; cy <= qy1; cy++) {
+			for (int cx = qx0; cx <= qx1; cx++) {
+				int c = cy * cols + cx;
+				int[] cell = cells[c];
+				for (int i = 0, n = counts[c]; i < n; i++) {
+					int s = cell[i];
+					float r = store.radius[s];
+					// a body spanning several cells is only reported from the first
+					// cell it shares with the query rectangle
+					if (cx != Math.max(qx0, cellX(store.x[s] - r)) || cy != Math.max(qy0, cellY(store.y[s] - r))) continue;
+					out.add(s);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds to out every slot bucketed in a cell crossed by the segment from
+	 * (x0, y0) to (x1, y1), walking the cells in order along the segment.
+	 * Each body is reported once.
+	 */
+	void querySegment(float x0, float y0, float x1, float y1, IntList out) {
+		int cx = cellX(x0), cy = cellY(y0);
+		int px = -1, py = -1;
+		float dx = x1 - x0, dy = y1 - y0;
+		int stepX = dx > 0 ? 1 : -1;
+		int stepY = dy > 0 ? 1 : -1;
+		float tDeltaX = dx != 0 ? Math.abs(CELL_SIZE / dx) : Float.POSITIVE_INFINITY;
+		float tDeltaY = dy != 0 ? Math.abs(CELL_SIZE / dy) : Float.POSITIVE_INFINITY;
+		float tMaxX = dx != 0 ? (originX + (cx + (stepX > 0 ? 1 : 0)) * CELL_SIZE - x0) / dx : Float.POSITIVE_INFINITY;
+		float tMaxY = dy != 0 ? (originY + (cy + (stepY > 0 ? 1 : 0)) * CELL_SIZE - y0) / dy : Float.POSITIVE_INFINITY;
+		while (true) {
+			int c = cy * cols + cx;
+			int[] cell = cells[c];
+			for (int i = 0, n = counts[c]; i < n; i++) {
+				int s = cell[i];
+				float r = store.radius[s];
+				// the walk only ever steps the same way along each axis, so once it
+				// leaves a body's cells it never comes back to them: the body was
+				// reported already exactly when the previous cell is one of its own
+				if (px >= 0 && px >= cellX(store.x[s] - r) && px <= cellX(store.x[s] + r)
+						&& py >= cellY(store.y[s] - r) && py <= cellY(store.y[s] + r)) continue;
+				out.add(s);
+			}
+			px = cx;
+			py = cy;
+			if (tMaxX > 1 && tMaxY > 1) break;
+			// past the edge of the grid the segment can only continue along the
+			// other axis, since off-map positions are clamped into edge cells
+			if (tMaxX < tMaxY) {
+				if (cx + stepX < 0 || cx + stepX >= cols) tMaxX = Float.POSITIVE_INFINITY;
+				else {
+					cx += stepX;
+					tMaxX += tDeltaX;
+				}
+			} else {
+				if (cy + stepY < 0 || cy + stepY >= rows) tMaxY = Float.POSITIVE_INFINITY;
+				else {
+					cy += stepY;
+					tMaxY += tDeltaY;
+				}
+			}
+		}
+	}
+
+}
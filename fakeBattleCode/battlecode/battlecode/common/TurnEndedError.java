@@ -0,0 +1,19 @@
+package battlecode.common;
+
+/**
+ * Thrown out of player code to end the current robot's turn, for example
+ * when it runs out of bytecodes. It is an Error so that player code catching
+ * Exception does not swallow it, and it carries no stack trace so throwing it
+ * is cheap.
+ */
+class TurnEndedError extends Error {
+
+	static final long serialVersionUID = 0x7e2d1e2dL;
+
+	static final TurnEndedError INSTANCE = new TurnEndedError();
+
+	private TurnEndedError() {
+		super("Turn ended", null, false, false);
+	}
+
+}
@@ -0,0 +1,66 @@
+package battlecode.common;
+
+import java.util.Arrays;
+
+/**
+ * The whole-world update steps run at the end of every round. Each system is
+ * a single pass over the component arrays of an EntityStore.
+ */
+final class WorldSystems {
+
+	private static final byte A = (byte)Team.A.ordinal();
+	private static final byte B = (byte)Team.B.ordinal();
+
+	private WorldSystems() {
+	}
+
+	/**
+	 * Pays each player team its income for the round: 2 bullets less one
+	 * percent of its current supply, plus one bullet per tree it owns.
+	 *
+	 * @param teamBullets bullet supplies of teams A and B, updated in place
+	 */
+	static void income(EntityStore b, double[] teamBullets) {
+		byte[] kind = b.kind, team = b.team;
+		int treesA = 0, treesB = 0;
+		for (int s = 0, end = b.end(); s < end; s++) {
+			if (kind[s] != EntityStore.TREE) continue;
+			if (team[s] == A) treesA++;
+			else if (team[s] == B) treesB++;
+		}
+		teamBullets[0] += 2 - teamBullets[0] / 100 + treesA;
+		teamBullets[1] += 2 - teamBullets[1] / 100 + treesB;
+	}
+
+	/**
+	 * Counts every running build cooldown down by one round. Free slots and
+	 * trees hold 0 and are left alone.
+	 */
+	static void cooldowns(EntityStore b) {
+		int[] cooldown = b.buildCooldown;
+		boolean owned = false;
+		for (int s = 0, end = b.end(); s < end; s++) {
+			if (cooldown[s] <= 0) continue;
+			if (!owned) {
+				b.own(EntityStore.COOLDOWN);
+				cooldown = b.buildCooldown;
+				owned = true;
+			}
+			cooldown[s]--;
+		}
+	}
+
+	/**
+	 * Forgets who broadcast this round.
+	 */
+	static void clearBroadcasts(EntityStore b) {
+		boolean[] broadcasting = b.broadcasting;
+		for (int s = 0, end = b.end(); s < end; s++) {
+			if (!broadcasting[s]) continue;
+			b.own(EntityStore.BROADCAST);
+			Arrays.fill(b.broadcasting, s, end, false);
+			return;
+		}
+	}
+
+}